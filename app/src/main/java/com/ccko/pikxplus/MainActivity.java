@@ -33,6 +33,8 @@ import androidx.core.view.WindowInsetsCompat;
 import androidx.core.view.WindowInsetsControllerCompat;
 import androidx.fragment.app.Fragment;
 import com.ccko.pikxplus.adapters.MainFragmentAdapter;
+import com.ccko.pikxplus.adapters.MediaThumbnailLoader;
+import com.ccko.pikxplus.adapters.SnapshotStore;
 import com.ccko.pikxplus.ui.AlbumsFragment;
 import com.ccko.pikxplus.ui.GestureOverlayView;
 import com.ccko.pikxplus.ui.PhotosFragment;
@@ -60,6 +62,10 @@ public class MainActivity extends AppCompatActivity
   @Override
   protected void onCreate(Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
+    // Read last run's albums while the views inflate, so they can be drawn in the first frame
+    SnapshotStore.getInstance(this).preload();
+    // Grid tiles and album covers come from the platform's thumbnail cache
+    MediaThumbnailLoader.register(this);
     setContentView(R.layout.activity_main); 
 
     // Enable edge-to-edge
@@ -495,11 +501,11 @@ public class MainActivity extends AppCompatActivity
     }
   }
 
-  public void onImageDeleted(int deletedIndex) {
+  public void onImageDeleted(int deletedIndex, Uri deletedUri) {
     Fragment fragment =
         getSupportFragmentManager().findFragmentByTag("f" + MainFragmentAdapter.POSITION_PHOTOS);
     if (fragment instanceof PhotosFragment) {
-      ((PhotosFragment) fragment).loadAlbumPhotos();
+      ((PhotosFragment) fragment).removeMedia(deletedUri);
     }
   }
 
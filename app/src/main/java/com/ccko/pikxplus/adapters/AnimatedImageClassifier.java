@@ -0,0 +1,201 @@
+package com.ccko.pikxplus.adapters;
+
+import android.content.ContentUris;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import com.ccko.pikxplus.utils.TaskScheduler;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tells animated WebPs apart from static ones without slowing down album loading.
+ *
+ * Telling them apart means reading the file header, one content provider round
+ * trip per WebP. Loaders ask typeFor(): GIFs and non-WebPs are answered from the
+ * mime type, WebPs from the results of earlier checks. Unknown WebPs are shown as
+ * IMAGE and queued; a background task checks them in batches, stores the result
+ * (keyed by _ID + DATE_MODIFIED, so an edited file is checked again) and tells the
+ * listeners which ones turned out to be animated so they can be upgraded in place.
+ * A header that can't be read isn't stored, the file is checked again next time.
+ */
+public class AnimatedImageClassifier {
+
+	private static final String TAG = "AnimatedImageClassifier";
+	private static final int BATCH_SIZE = 32;
+
+	/**
+	 * Called on the main thread with the ids of items that are animated.
+	 */
+	public interface Listener {
+		void onAnimatedImagesFound(Set<String> ids);
+	}
+
+	private static volatile AnimatedImageClassifier instance;
+
+	private final Context appContext;
+	private final Handler mainHandler = new Handler(Looper.getMainLooper());
+	private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+	// id -> (date_modified << 1) | animated
+	private final Map<Long, Long> results = new HashMap<>();
+	// id -> date_modified, in arrival order
+	private final LinkedHashMap<Long, Long> pending = new LinkedHashMap<>();
+	private boolean loaded;
+	private boolean running;
+
+	public static AnimatedImageClassifier getInstance(Context context) {
+		if (instance == null) {
+			synchronized (AnimatedImageClassifier.class) {
+				if (instance == null) {
+					instance = new AnimatedImageClassifier(context.getApplicationContext());
+				}
+			}
+		}
+		return instance;
+	}
+
+	private AnimatedImageClassifier(Context appContext) {
+		this.appContext = appContext;
+	}
+
+	public void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Type of an image row, without any file access. A WebP that hasn't been
+	 * checked yet comes back as IMAGE and is queued for the background check.
+	 */
+	public MediaItems.MediaType typeFor(long id, long dateModified, String mimeType) {
+		if (mimeType == null) {
+			return MediaItems.MediaType.IMAGE;
+		}
+		if (mimeType.equals("image/gif")) {
+			return MediaItems.MediaType.ANIMATED_IMAGE;
+		}
+		if (!mimeType.contains("webp")) {
+			return MediaItems.MediaType.IMAGE;
+		}
+
+		synchronized (this) {
+			ensureLoaded();
+			Long result = results.get(id);
+			if (result != null && (result >> 1) == dateModified) {
+				return (result & 1) != 0 ? MediaItems.MediaType.ANIMATED_IMAGE : MediaItems.MediaType.IMAGE;
+			}
+			pending.put(id, dateModified);
+		}
+		start();
+		return MediaItems.MediaType.IMAGE;
+	}
+
+	/**
+	 * Queue a WebP row for checking (e.g. one the index stored while the
+	 * previous check never finished).
+	 */
+	public void request(long id, long dateModified) {
+		synchronized (this) {
+			ensureLoaded();
+			Long result = results.get(id);
+			if (result != null && (result >> 1) == dateModified) {
+				return;
+			}
+			pending.put(id, dateModified);
+		}
+		start();
+	}
+
+	// Results of earlier runs, read once per process
+	private void ensureLoaded() {
+		if (loaded)
+			return;
+		loaded = true;
+		MediaIndex.getInstance(appContext).readAnimatedChecks(results);
+	}
+
+	private synchronized void start() {
+		if (running || pending.isEmpty())
+			return;
+		running = true;
+		TaskScheduler.get().submit(TaskScheduler.Lane.BACKGROUND, null, this::drain);
+	}
+
+	private void drain() {
+		while (true) {
+			long[] ids;
+			long[] dates;
+			int count = 0;
+			synchronized (this) {
+				if (pending.isEmpty()) {
+					running = false;
+					return;
+				}
+				int size = Math.min(BATCH_SIZE, pending.size());
+				ids = new long[size];
+				dates = new long[size];
+				Iterator<Map.Entry<Long, Long>> it = pending.entrySet().iterator();
+				while (count < size) {
+					Map.Entry<Long, Long> entry = it.next();
+					ids[count] = entry.getKey();
+					dates[count] = entry.getValue();
+					it.remove();
+					count++;
+				}
+			}
+
+			boolean[] animated = new boolean[count];
+			Set<String> found = new HashSet<>();
+			int checked = 0; // ids/dates are compacted to the rows whose header could be read
+			for (int i = 0; i < count; i++) {
+				Uri uri = ContentUris.withAppendedId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, ids[i]);
+				MediaItems.MediaType type = MediaStoreHelper.detectImageType(appContext, uri, "image/webp");
+				if (type == null)
+					continue; // not stored, the next load that sees it asks again
+				ids[checked] = ids[i];
+				dates[checked] = dates[i];
+				animated[checked] = type == MediaItems.MediaType.ANIMATED_IMAGE;
+				if (animated[checked]) {
+					found.add(String.valueOf(ids[checked]));
+				}
+				checked++;
+			}
+			count = checked;
+
+			try {
+				MediaIndex.getInstance(appContext).saveAnimatedChecks(ids, dates, animated, count);
+			} catch (Exception e) {
+				Log.e(TAG, "Error saving animated image checks", e);
+			}
+
+			synchronized (this) {
+				for (int i = 0; i < count; i++) {
+					results.put(ids[i], (dates[i] << 1) | (animated[i] ? 1 : 0));
+				}
+			}
+
+			if (!found.isEmpty()) {
+				mainHandler.post(() -> {
+					for (Listener listener : listeners) {
+						listener.onAnimatedImagesFound(found);
+					}
+				});
+			}
+		}
+	}
+}
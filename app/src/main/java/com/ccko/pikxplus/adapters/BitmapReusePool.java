@@ -0,0 +1,140 @@
+package com.ccko.pikxplus.adapters;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Bitmaps ImageLoader decoded and the viewer no longer shows, kept for the next
+ * decode to draw into (inBitmap) instead of allocating another multi-MB bitmap
+ * per swipe / slideshow step.
+ *
+ * Pooled bitmaps sit in buckets by allocation size (powers of two), so get()
+ * only looks at the bucket of the size it needs and the one above; anything
+ * bigger would waste more memory than it saves. Only bitmaps ImageLoader handed
+ * out are taken back, so a bitmap someone else still owns (e.g. Glide's) never
+ * ends up decoded over. The pool holds at most an eighth of the heap, oldest
+ * bitmaps go first.
+ */
+public final class BitmapReusePool {
+
+	private static final int BUCKETS = 32;
+
+	private static final BitmapReusePool INSTANCE = new BitmapReusePool(Runtime.getRuntime().maxMemory() / 8);
+
+	private final long maxBytes;
+
+	// guarded by this
+	private final ArrayDeque<Bitmap>[] buckets;
+	private final ArrayDeque<Bitmap> byAge = new ArrayDeque<>(); // oldest first
+	private long bytes;
+	private final Set<Bitmap> handedOut = Collections.newSetFromMap(new WeakHashMap<>());
+
+	public static BitmapReusePool get() {
+		return INSTANCE;
+	}
+
+	@SuppressWarnings("unchecked")
+	private BitmapReusePool(long maxBytes) {
+		this.maxBytes = maxBytes;
+		buckets = new ArrayDeque[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets[i] = new ArrayDeque<>();
+		}
+	}
+
+	/**
+	 * A pooled bitmap big enough to decode width x height of config into, or
+	 * null. It's out of the pool until it comes back through put().
+	 */
+	public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+		long needed = (long) width * height * bytesPerPixel(config);
+		if (needed <= 0)
+			return null;
+		int first = bucket(needed);
+		for (int b = first; b <= first + 1 && b < BUCKETS; b++) {
+			for (Iterator<Bitmap> it = buckets[b].iterator(); it.hasNext();) {
+				Bitmap bitmap = it.next();
+				if (bitmap.getAllocationByteCount() >= needed) {
+					it.remove();
+					byAge.remove(bitmap);
+					bytes -= bitmap.getAllocationByteCount();
+					handedOut.add(bitmap);
+					return bitmap;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Give a bitmap that's no longer drawn back for reuse. Bitmaps the pool
+	 * didn't hand out through ImageLoader are ignored.
+	 */
+	public void put(Bitmap bitmap) {
+		if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable())
+			return;
+		synchronized (this) {
+			if (!handedOut.remove(bitmap))
+				return;
+			int size = bitmap.getAllocationByteCount();
+			if (size > maxBytes / 2)
+				return; // would push everything else out
+			buckets[bucket(size)].add(bitmap);
+			byAge.add(bitmap);
+			bytes += size;
+			while (bytes > maxBytes) {
+				Bitmap oldest = byAge.poll();
+				buckets[bucket(oldest.getAllocationByteCount())].remove(oldest);
+				bytes -= oldest.getAllocationByteCount();
+				oldest.recycle(); // nobody else holds it
+			}
+		}
+	}
+
+	/**
+	 * Mark a freshly decoded bitmap as the pool's to take back.
+	 */
+	synchronized void track(Bitmap bitmap) {
+		if (bitmap != null && bitmap.isMutable()) {
+			handedOut.add(bitmap);
+		}
+	}
+
+	/**
+	 * Drop everything pooled (e.g. when the viewer closes).
+	 */
+	public synchronized void clear() {
+		for (Bitmap bitmap : byAge) {
+			bitmap.recycle();
+		}
+		for (ArrayDeque<Bitmap> bucket : buckets) {
+			bucket.clear();
+		}
+		byAge.clear();
+		bytes = 0;
+	}
+
+	// ceil(log2(size)): bucket b holds (2^(b-1), 2^b] bytes
+	private static int bucket(long size) {
+		return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(size - 1));
+	}
+
+	private static int bytesPerPixel(Bitmap.Config config) {
+		switch (config) {
+			case ALPHA_8:
+				return 1;
+			case RGB_565:
+			case ARGB_4444:
+				return 2;
+			case RGBA_F16:
+				return 8;
+			default:
+				return 4;
+		}
+	}
+}
@@ -3,8 +3,16 @@ package com.ccko.pikxplus.adapters;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.ImageDecoder;
+import android.graphics.drawable.Drawable;
+import android.media.ExifInterface;
 import android.net.Uri;
-import java.io.InputStream;
+import android.os.ParcelFileDescriptor;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import java.io.FileDescriptor;
+import java.io.IOException;
 
 public class ImageLoader {
 
@@ -20,39 +28,115 @@ public class ImageLoader {
   // For full viewer with zoom (4K max)
   Bitmap fullImage = ImageLoader.loadWithLimit(context, uri, ImageLoader.MAX_FULL);
 */
+  /**
+   * Decode the image at uri, sampled down to at most maxDimension a side. The Uri is opened once:
+   * bounds and pixels are read from the same descriptor (BitmapFactory puts the descriptor's
+   * offset back after each pass), so a content Uri costs one provider call instead of two.
+   */
   public static Bitmap loadWithLimit(Context context, Uri uri, int maxDimension) {
-    try {
-      BitmapFactory.Options options = new BitmapFactory.Options();
-      options.inJustDecodeBounds = true;
+    try (ParcelFileDescriptor pfd = context.getContentResolver().openFileDescriptor(uri, "r")) {
+      if (pfd == null) return null;
+      return decodeWithLimit(pfd.getFileDescriptor(), maxDimension);
+    } catch (Exception e) {
+      return null;
+    }
+  }
 
-      try (InputStream is = context.getContentResolver().openInputStream(uri)) {
-        if (is == null) return null;
-        BitmapFactory.decodeStream(is, null, options);
+  /**
+   * loadWithLimit() for images stored upright only: null if the EXIF orientation says it's
+   * rotated or mirrored, which BitmapFactory wouldn't apply (decodeDrawable() does). Still one
+   * open, the EXIF header is read from the same descriptor.
+   */
+  public static Bitmap loadUprightWithLimit(Context context, Uri uri, int maxDimension) {
+    try (ParcelFileDescriptor pfd = context.getContentResolver().openFileDescriptor(uri, "r")) {
+      if (pfd == null) return null;
+      FileDescriptor fd = pfd.getFileDescriptor();
+      try {
+        int orientation =
+            new ExifInterface(fd)
+                .getAttributeInt(
+                    ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        if (orientation != ExifInterface.ORIENTATION_NORMAL
+            && orientation != ExifInterface.ORIENTATION_UNDEFINED) {
+          return null;
+        }
+        Os.lseek(fd, 0, OsConstants.SEEK_SET);
+      } catch (IOException ignored) {
+        // no EXIF in this format
+      } catch (ErrnoException e) {
+        return null; // not seekable
       }
+      return decodeWithLimit(fd, maxDimension);
+    } catch (Exception e) {
+      return null;
+    }
+  }
 
-      int width = options.outWidth;
-      int height = options.outHeight;
+  private static Bitmap decodeWithLimit(FileDescriptor fd, int maxDimension) {
+    BitmapFactory.Options options = new BitmapFactory.Options();
+    options.inJustDecodeBounds = true;
+    BitmapFactory.decodeFileDescriptor(fd, null, options);
 
-      // YOUR SIMPLE CONDITION
-      if (width > maxDimension || height > maxDimension) {
-        // Scale down proportionally
-        float scale = Math.min((float) maxDimension / width, (float) maxDimension / height);
-        width = (int) (width * scale);
-        height = (int) (height * scale);
-      }
+    int width = options.outWidth;
+    int height = options.outHeight;
 
-      // Calculate sample size for these dimensions
-      options.inSampleSize = calculateInSampleSize(options, width, height);
-      options.inJustDecodeBounds = false;
-      options.inPreferredConfig = Bitmap.Config.RGB_565;
+    // YOUR SIMPLE CONDITION
+    if (width > maxDimension || height > maxDimension) {
+      // Scale down proportionally
+      float scale = Math.min((float) maxDimension / width, (float) maxDimension / height);
+      width = (int) (width * scale);
+      height = (int) (height * scale);
+    }
 
-      try (InputStream is = context.getContentResolver().openInputStream(uri)) {
-        if (is == null) return null;
-        return BitmapFactory.decodeStream(is, null, options);
-      }
-    } catch (Exception e) {
-      return null;
+    // Calculate sample size for these dimensions
+    options.inSampleSize = calculateInSampleSize(options, width, height);
+    options.inJustDecodeBounds = false;
+    options.inPreferredConfig = Bitmap.Config.RGB_565;
+
+    // Decode into a bitmap the viewer gave back if one is big enough
+    BitmapReusePool pool = BitmapReusePool.get();
+    int sample = options.inSampleSize;
+    options.inMutable = true;
+    options.inBitmap =
+        pool.get(
+            (options.outWidth + sample - 1) / sample,
+            (options.outHeight + sample - 1) / sample,
+            Bitmap.Config.RGB_565);
+
+    Bitmap bitmap;
+    try {
+      bitmap = BitmapFactory.decodeFileDescriptor(fd, null, options);
+    } catch (IllegalArgumentException e) {
+      bitmap = null; // the decoder couldn't use it after all
+    }
+    if (bitmap == null && options.inBitmap != null) {
+      pool.put(options.inBitmap);
+      options.inBitmap = null;
+      bitmap = BitmapFactory.decodeFileDescriptor(fd, null, options);
     }
+    pool.track(bitmap);
+    return bitmap;
+  }
+
+  /**
+   * Decode uri with ImageDecoder, scaled to fit maxDimension. Header and pixels come from the one
+   * source (a single open), the target size is set once the header is read. GIFs and animated
+   * WebPs come back as AnimatedImageDrawable.
+   */
+  public static Drawable decodeDrawable(Context context, Uri uri, int maxDimension)
+      throws IOException {
+    ImageDecoder.Source source = ImageDecoder.createSource(context.getContentResolver(), uri);
+    return ImageDecoder.decodeDrawable(
+        source,
+        (decoder, info, src) -> {
+          int width = info.getSize().getWidth();
+          int height = info.getSize().getHeight();
+          if (width > maxDimension || height > maxDimension) {
+            float scale = Math.min((float) maxDimension / width, (float) maxDimension / height);
+            decoder.setTargetSize(
+                Math.max(1, (int) (width * scale)), Math.max(1, (int) (height * scale)));
+          }
+        });
   }
 
   private static int calculateInSampleSize(
@@ -0,0 +1,550 @@
+package com.ccko.pikxplus.adapters;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import com.ccko.pikxplus.utils.TaskScheduler;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * App-private SQLite mirror of the MediaStore rows that MediaItems needs.
+ * Synced incrementally per volume using MediaStore.getVersion / getGeneration,
+ * so only rows changed since the last sync are re-read from the provider.
+ */
+public class MediaIndex extends SQLiteOpenHelper {
+
+	private static final String TAG = "MediaIndex";
+	private static final String DB_NAME = "media_index.db";
+	private static final int DB_VERSION = 2;
+
+	private static final String TABLE_MEDIA = "media";
+	private static final String TABLE_SYNC = "sync_state";
+	private static final String TABLE_ANIMATED = "animated_check"; // WebP header checks
+
+	// MediaStore.Files media types we mirror
+	private static final String MEDIA_TYPE_SELECTION = MediaStore.Files.FileColumns.MEDIA_TYPE + " IN ("
+			+ MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE + "," + MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO
+			+ ")";
+
+	private static final String[] FILES_PROJECTION = { MediaStore.Files.FileColumns._ID,
+			MediaStore.Files.FileColumns.MEDIA_TYPE, MediaStore.Files.FileColumns.DISPLAY_NAME,
+			MediaStore.Files.FileColumns.DATE_MODIFIED, MediaStore.Files.FileColumns.SIZE,
+			MediaStore.Files.FileColumns.WIDTH, MediaStore.Files.FileColumns.HEIGHT,
+			MediaStore.Files.FileColumns.DURATION, MediaStore.Files.FileColumns.BUCKET_ID,
+			MediaStore.Files.FileColumns.BUCKET_DISPLAY_NAME, MediaStore.Files.FileColumns.RELATIVE_PATH,
+			MediaStore.Files.FileColumns.VOLUME_NAME, MediaStore.Files.FileColumns.MIME_TYPE };
+
+	private static final String[] MEDIA_COLUMNS = { "_id", "type", "name", "date_modified", "size", "width", "height",
+			"duration", "bucket_id", "bucket_name", "relative_path", "volume_name", "mime_type" };
+
+	private static volatile MediaIndex instance;
+
+	private final Context appContext;
+	private volatile boolean ready;
+	// sync() runs under this, not the helper's monitor: getReadableDatabase() locks the helper,
+	// so readers would wait for a whole sync
+	private final Object syncLock = new Object();
+
+	public static MediaIndex getInstance(Context context) {
+		if (instance == null) {
+			synchronized (MediaIndex.class) {
+				if (instance == null) {
+					instance = new MediaIndex(context.getApplicationContext());
+				}
+			}
+		}
+		return instance;
+	}
+
+	private MediaIndex(Context appContext) {
+		super(appContext, DB_NAME, null, DB_VERSION);
+		this.appContext = appContext;
+	}
+
+	@Override
+	public void onConfigure(SQLiteDatabase db) {
+		// Readers (album screens) must not block behind a running sync
+		db.enableWriteAheadLogging();
+	}
+
+	@Override
+	public void onCreate(SQLiteDatabase db) {
+		db.execSQL("CREATE TABLE " + TABLE_MEDIA + " (" + "_id INTEGER PRIMARY KEY, " + "type TEXT NOT NULL, "
+				+ "name TEXT, " + "date_modified INTEGER NOT NULL DEFAULT 0, " + "size INTEGER NOT NULL DEFAULT 0, "
+				+ "width INTEGER NOT NULL DEFAULT 0, " + "height INTEGER NOT NULL DEFAULT 0, "
+				+ "duration INTEGER NOT NULL DEFAULT 0, " + "bucket_id TEXT, " + "bucket_name TEXT, "
+				+ "relative_path TEXT, " + "volume_name TEXT, " + "mime_type TEXT)");
+		db.execSQL("CREATE INDEX media_bucket_id ON " + TABLE_MEDIA + " (bucket_id, date_modified DESC)");
+		db.execSQL("CREATE INDEX media_bucket_name ON " + TABLE_MEDIA + " (bucket_name)");
+		db.execSQL("CREATE INDEX media_date ON " + TABLE_MEDIA + " (date_modified DESC, _id DESC)");
+
+		db.execSQL("CREATE TABLE " + TABLE_SYNC + " (" + "volume_name TEXT PRIMARY KEY, " + "version TEXT, "
+				+ "generation INTEGER NOT NULL DEFAULT 0)");
+
+		db.execSQL("CREATE TABLE " + TABLE_ANIMATED + " (" + "_id INTEGER PRIMARY KEY, "
+				+ "date_modified INTEGER NOT NULL, " + "animated INTEGER NOT NULL)");
+	}
+
+	@Override
+	public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+		// The index is a pure cache of MediaStore, rebuilding it is always safe
+		db.execSQL("DROP TABLE IF EXISTS " + TABLE_MEDIA);
+		db.execSQL("DROP TABLE IF EXISTS " + TABLE_SYNC);
+		db.execSQL("DROP TABLE IF EXISTS " + TABLE_ANIMATED);
+		onCreate(db);
+	}
+
+	/**
+	 * True once at least one full sync has completed, so reads reflect MediaStore.
+	 */
+	public boolean isReady() {
+		if (ready)
+			return true;
+		try (Cursor cursor = getReadableDatabase().rawQuery("SELECT 1 FROM " + TABLE_SYNC + " LIMIT 1", null)) {
+			ready = cursor.moveToFirst();
+		} catch (Exception e) {
+			Log.e(TAG, "Error checking index state", e);
+		}
+		return ready;
+	}
+
+	/**
+	 * Bring the index up to date with MediaStore.
+	 * Returns true if any row was added, changed or removed.
+	 */
+	public boolean sync() {
+		synchronized (syncLock) {
+			boolean changed = false;
+			try {
+				SQLiteDatabase db = getWritableDatabase();
+				Set<String> volumes = MediaStore.getExternalVolumeNames(appContext);
+
+				for (String volume : volumes) {
+					changed |= syncVolume(db, volume);
+				}
+
+				// Drop rows from volumes that are gone (e.g. SD card removed)
+				changed |= pruneVolumes(db, volumes);
+				ready = true;
+
+				queueUncheckedWebp(db);
+			} catch (Exception e) {
+				Log.e(TAG, "Error syncing media index", e);
+			}
+			return changed;
+		}
+	}
+
+	private boolean syncVolume(SQLiteDatabase db, String volume) {
+		// Read version/generation BEFORE querying, anything modified meanwhile is picked up next time
+		String version = MediaStore.getVersion(appContext, volume);
+		long generation = MediaStore.getGeneration(appContext, volume);
+
+		String storedVersion = null;
+		long storedGeneration = -1;
+		try (Cursor cursor = db.query(TABLE_SYNC, new String[] { "version", "generation" }, "volume_name = ?",
+				new String[] { volume }, null, null, null)) {
+			if (cursor.moveToFirst()) {
+				storedVersion = cursor.getString(0);
+				storedGeneration = cursor.getLong(1);
+			}
+		}
+
+		boolean sameVersion = version != null && version.equals(storedVersion);
+		if (sameVersion && generation == storedGeneration) {
+			return false;
+		}
+
+		boolean changed;
+		db.beginTransaction();
+		try {
+			if (!sameVersion) {
+				// MediaStore was rebuilt (or first run), generations are not comparable
+				db.delete(TABLE_MEDIA, "volume_name = ?", new String[] { volume });
+				changed = copyRows(db, volume, -1) > 0 || storedVersion != null;
+			} else {
+				changed = copyRows(db, volume, storedGeneration) > 0;
+			}
+			changed |= pruneDeleted(db, volume);
+
+			ContentValues values = new ContentValues();
+			values.put("volume_name", volume);
+			values.put("version", version);
+			values.put("generation", generation);
+			db.insertWithOnConflict(TABLE_SYNC, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+		return changed;
+	}
+
+	/**
+	 * Copy rows modified after sinceGeneration (or all rows when -1) into the index.
+	 */
+	private int copyRows(SQLiteDatabase db, String volume, long sinceGeneration) {
+		String selection = MEDIA_TYPE_SELECTION;
+		String[] selectionArgs = null;
+		if (sinceGeneration >= 0) {
+			selection += " AND " + MediaStore.Files.FileColumns.GENERATION_MODIFIED + " > ?";
+			selectionArgs = new String[] { String.valueOf(sinceGeneration) };
+		}
+
+		SQLiteStatement insert = db.compileStatement("INSERT OR REPLACE INTO " + TABLE_MEDIA + " ("
+				+ String.join(", ", MEDIA_COLUMNS) + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+
+		AnimatedImageClassifier classifier = AnimatedImageClassifier.getInstance(appContext);
+		int copied = 0;
+		try (Cursor cursor = appContext.getContentResolver().query(MediaStore.Files.getContentUri(volume),
+				FILES_PROJECTION, selection, selectionArgs, null)) {
+			if (cursor == null)
+				return 0;
+
+			int idCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns._ID);
+			int mediaTypeCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.MEDIA_TYPE);
+			int nameCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.DISPLAY_NAME);
+			int dateCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.DATE_MODIFIED);
+			int sizeCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.SIZE);
+			int widthCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.WIDTH);
+			int heightCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.HEIGHT);
+			int durationCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.DURATION);
+			int bucketIdCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.BUCKET_ID);
+			int bucketNameCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.BUCKET_DISPLAY_NAME);
+			int relativePathCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.RELATIVE_PATH);
+			int volumeNameCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.VOLUME_NAME);
+			int mimeTypeCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.MIME_TYPE);
+
+			while (cursor.moveToNext()) {
+				long id = cursor.getLong(idCol);
+				boolean isVideo = cursor.getInt(mediaTypeCol) == MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO;
+				String mimeType = cursor.getString(mimeTypeCol);
+
+				// WebPs not checked yet go in as IMAGE, the classifier upgrades the row later
+				MediaItems.MediaType type;
+				if (isVideo) {
+					type = MediaItems.MediaType.VIDEO;
+				} else {
+					type = classifier.typeFor(id, cursor.getLong(dateCol), mimeType);
+				}
+
+				insert.clearBindings();
+				insert.bindLong(1, id);
+				insert.bindString(2, type.name());
+				bindStringOrNull(insert, 3, cursor.getString(nameCol));
+				insert.bindLong(4, cursor.getLong(dateCol));
+				insert.bindLong(5, cursor.getLong(sizeCol));
+				insert.bindLong(6, cursor.getInt(widthCol));
+				insert.bindLong(7, cursor.getInt(heightCol));
+				insert.bindLong(8, cursor.getLong(durationCol));
+				bindStringOrNull(insert, 9, cursor.getString(bucketIdCol));
+				bindStringOrNull(insert, 10, cursor.getString(bucketNameCol));
+				bindStringOrNull(insert, 11, cursor.getString(relativePathCol));
+				bindStringOrNull(insert, 12, cursor.getString(volumeNameCol));
+				bindStringOrNull(insert, 13, mimeType);
+				insert.executeInsert();
+				copied++;
+			}
+		} finally {
+			insert.close();
+		}
+		return copied;
+	}
+
+	/**
+	 * Generations don't record deletions. Only when the row counts disagree do we
+	 * pay for an id sweep of the volume.
+	 */
+	private boolean pruneDeleted(SQLiteDatabase db, String volume) {
+		Set<Long> liveIds = new HashSet<>();
+		try (Cursor cursor = appContext.getContentResolver().query(MediaStore.Files.getContentUri(volume),
+				new String[] { MediaStore.Files.FileColumns._ID }, MEDIA_TYPE_SELECTION, null, null)) {
+			if (cursor == null)
+				return false;
+
+			long localCount = DatabaseUtils.queryNumEntries(db, TABLE_MEDIA, "volume_name = ?",
+					new String[] { volume });
+			if (cursor.getCount() == localCount)
+				return false;
+
+			while (cursor.moveToNext()) {
+				liveIds.add(cursor.getLong(0));
+			}
+		}
+
+		List<Long> stale = new ArrayList<>();
+		try (Cursor cursor = db.query(TABLE_MEDIA, new String[] { "_id" }, "volume_name = ?", new String[] { volume },
+				null, null, null)) {
+			while (cursor.moveToNext()) {
+				long id = cursor.getLong(0);
+				if (!liveIds.contains(id)) {
+					stale.add(id);
+				}
+			}
+		}
+
+		for (long id : stale) {
+			db.delete(TABLE_MEDIA, "_id = ?", new String[] { String.valueOf(id) });
+		}
+		return !stale.isEmpty();
+	}
+
+	private boolean pruneVolumes(SQLiteDatabase db, Set<String> volumes) {
+		List<String> gone = new ArrayList<>();
+		try (Cursor cursor = db.query(TABLE_SYNC, new String[] { "volume_name" }, null, null, null, null, null)) {
+			while (cursor.moveToNext()) {
+				String volume = cursor.getString(0);
+				if (!volumes.contains(volume)) {
+					gone.add(volume);
+				}
+			}
+		}
+
+		int removed = 0;
+		for (String volume : gone) {
+			removed += db.delete(TABLE_MEDIA, "volume_name = ?", new String[] { volume });
+			db.delete(TABLE_SYNC, "volume_name = ?", new String[] { volume });
+		}
+		return removed > 0;
+	}
+
+	/**
+	 * WebPs whose check never finished (e.g. the process died) or is out of date
+	 * get queued again, otherwise they'd stay IMAGE in the index.
+	 */
+	private void queueUncheckedWebp(SQLiteDatabase db) {
+		AnimatedImageClassifier classifier = AnimatedImageClassifier.getInstance(appContext);
+		String sql = "SELECT m._id, m.date_modified FROM " + TABLE_MEDIA + " m LEFT JOIN " + TABLE_ANIMATED
+				+ " a ON a._id = m._id AND a.date_modified = m.date_modified "
+				+ "WHERE m.mime_type LIKE '%webp%' AND a._id IS NULL";
+		try (Cursor cursor = db.rawQuery(sql, null)) {
+			while (cursor.moveToNext()) {
+				classifier.request(cursor.getLong(0), cursor.getLong(1));
+			}
+		}
+	}
+
+	/**
+	 * Stored WebP checks as id -> (date_modified << 1) | animated.
+	 */
+	void readAnimatedChecks(Map<Long, Long> into) {
+		try (Cursor cursor = getReadableDatabase().query(TABLE_ANIMATED,
+				new String[] { "_id", "date_modified", "animated" }, null, null, null, null, null)) {
+			while (cursor.moveToNext()) {
+				into.put(cursor.getLong(0), (cursor.getLong(1) << 1) | (cursor.getInt(2) != 0 ? 1 : 0));
+			}
+		} catch (Exception e) {
+			Log.e(TAG, "Error reading animated image checks", e);
+		}
+	}
+
+	/**
+	 * Store a batch of WebP checks and upgrade the matching media rows.
+	 */
+	void saveAnimatedChecks(long[] ids, long[] dates, boolean[] animated, int count) {
+		SQLiteDatabase db = getWritableDatabase();
+		SQLiteStatement insert = db.compileStatement("INSERT OR REPLACE INTO " + TABLE_ANIMATED
+				+ " (_id, date_modified, animated) VALUES (?, ?, ?)");
+		SQLiteStatement upgrade = db.compileStatement("UPDATE " + TABLE_MEDIA + " SET type = '"
+				+ MediaItems.MediaType.ANIMATED_IMAGE.name() + "' WHERE _id = ? AND date_modified = ?");
+		db.beginTransaction();
+		try {
+			for (int i = 0; i < count; i++) {
+				insert.bindLong(1, ids[i]);
+				insert.bindLong(2, dates[i]);
+				insert.bindLong(3, animated[i] ? 1 : 0);
+				insert.executeInsert();
+
+				if (animated[i]) {
+					upgrade.bindLong(1, ids[i]);
+					upgrade.bindLong(2, dates[i]);
+					upgrade.executeUpdateDelete();
+				}
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+			insert.close();
+			upgrade.close();
+		}
+	}
+
+	/**
+	 * Drop a single item (e.g. after the viewer deleted it) instead of waiting
+	 * for the next sync to notice. Queued on the BACKGROUND lane: opening the
+	 * database or waiting out a running sync's transaction must not block the
+	 * caller (usually the UI thread).
+	 */
+	public void remove(String id) {
+		TaskScheduler.get().submit(TaskScheduler.Lane.BACKGROUND, null, () -> {
+			try {
+				getWritableDatabase().delete(TABLE_MEDIA, "_id = ?", new String[] { id });
+			} catch (Exception e) {
+				Log.e(TAG, "Error removing " + id + " from index", e);
+			}
+		});
+	}
+
+	/**
+	 * Albums aggregated by the database, one row per bucket, newest first.
+	 * Same shape as MediaStoreHelper.loadAlbums() (including "All Media"), same
+	 * cover too: the newest photo, the newest video only for video-only albums.
+	 */
+	public List<AlbumInfo> loadAlbums() {
+		Map<String, AlbumInfo> albumMap = new LinkedHashMap<>();
+
+		// Bare columns in an aggregate with MAX() come from the row holding the max (SQLite).
+		// The newest photo is looked up per bucket through the (bucket_id, date_modified) index.
+		String sql = "SELECT bucket_id, bucket_name, relative_path, volume_name, _id, type, "
+				+ "SUM(type != 'VIDEO') AS photos, SUM(type = 'VIDEO') AS videos, "
+				+ "MAX(date_modified) AS latest, "
+				+ "(SELECT p._id FROM " + TABLE_MEDIA + " p WHERE p.bucket_id = m.bucket_id AND p.type != 'VIDEO' "
+				+ "ORDER BY p.date_modified DESC LIMIT 1) AS photo_id "
+				+ "FROM " + TABLE_MEDIA + " m GROUP BY bucket_id ORDER BY latest DESC";
+
+		try (Cursor cursor = getReadableDatabase().rawQuery(sql, null)) {
+			while (cursor.moveToNext()) {
+				String bucketId = cursor.getString(0);
+				long thumbId;
+				boolean thumbIsVideo;
+				if (!cursor.isNull(9)) {
+					thumbId = cursor.getLong(9);
+					thumbIsVideo = false;
+				} else {
+					thumbId = cursor.getLong(4); // video-only album
+					thumbIsVideo = MediaItems.MediaType.VIDEO.name().equals(cursor.getString(5));
+				}
+
+				AlbumInfo album = new AlbumInfo(bucketId, cursor.getString(1), cursor.getInt(6), cursor.getInt(7),
+						contentUri(thumbId, thumbIsVideo), cursor.getString(2), cursor.getString(3));
+				albumMap.put(bucketId, album);
+			}
+		} catch (Exception e) {
+			Log.e(TAG, "Error loading albums from index", e);
+		}
+
+		return MediaStoreHelper.withAllMediaAlbum(albumMap.values());
+	}
+
+	/**
+	 * Photos + videos of an album, newest first. Same selection rules as
+	 * MediaStoreHelper.loadMediaForAlbum.
+	 */
+	public MediaTable loadMediaForAlbum(String albumId, String albumName, String folderName) {
+		return loadMediaForAlbum(albumId, albumName, folderName, null);
+	}
+
+	public MediaTable loadMediaForAlbum(String albumId, String albumName, String folderName,
+			CancellationSignal cancellationSignal) {
+		return loadMediaPage(albumId, albumName, folderName, MediaStoreHelper.PageOrder.DATE_DESC, 0, 0,
+				cancellationSignal);
+	}
+
+	/**
+	 * One page of an album from the index when it's built, otherwise straight
+	 * from MediaStore.
+	 */
+	public static MediaTable loadAlbumPage(Context context, String albumId, String albumName, String folderName,
+			MediaStoreHelper.PageOrder order, int limit, int offset, CancellationSignal cancellationSignal) {
+		MediaIndex index = getInstance(context);
+		if (index.isReady()) {
+			return index.loadMediaPage(albumId, albumName, folderName, order, limit, offset, cancellationSignal);
+		}
+		return MediaStoreHelper.loadMediaPage(context, albumId, albumName, folderName, order, limit, offset,
+				cancellationSignal);
+	}
+
+	public MediaTable loadMediaPage(String albumId, String albumName, String folderName,
+			MediaStoreHelper.PageOrder order, int limit, int offset) {
+		return loadMediaPage(albumId, albumName, folderName, order, limit, offset, null);
+	}
+
+	/**
+	 * One page of an album in the given order. limit = 0 means everything from
+	 * offset on (the whole album for offset 0).
+	 * A cancelled load (signal or interrupt) returns an empty table.
+	 */
+	public MediaTable loadMediaPage(String albumId, String albumName, String folderName,
+			MediaStoreHelper.PageOrder order, int limit, int offset, CancellationSignal cancellationSignal) {
+		String selection;
+		String[] selectionArgs;
+
+		if (albumId != null && albumId.equals("all_media")) {
+			selection = null;
+			selectionArgs = null;
+		} else if (albumName != null && !albumName.isEmpty()) {
+			selection = "bucket_name = ?";
+			selectionArgs = new String[] { albumName };
+		} else if (folderName != null && !folderName.isEmpty()) {
+			selection = "relative_path = ?";
+			selectionArgs = new String[] { folderName };
+		} else {
+			selection = "bucket_id = ?";
+			selectionArgs = new String[] { albumId };
+		}
+
+		// SQLiteQueryBuilder only takes non-negative numbers, so "no limit" past an offset is Long.MAX_VALUE
+		String limitClause = limit > 0 ? offset + ", " + limit : offset > 0 ? offset + ", " + Long.MAX_VALUE : null;
+		MediaTable items = null;
+
+		try (Cursor cursor = getReadableDatabase().query(false, TABLE_MEDIA, MEDIA_COLUMNS, selection, selectionArgs,
+				null, null, order.indexOrder, limitClause, cancellationSignal)) {
+			items = new MediaTable(cursor.getCount());
+			for (int row = 0; cursor.moveToNext(); row++) {
+				if (MediaStoreHelper.isCanceled(cancellationSignal, row))
+					return new MediaTable();
+				readRow(cursor, items);
+			}
+		} catch (OperationCanceledException e) {
+			return new MediaTable();
+		} catch (Exception e) {
+			Log.e(TAG, "Error loading album from index", e);
+		}
+		return items != null ? items : new MediaTable();
+	}
+
+	// Column order follows MEDIA_COLUMNS
+	private static void readRow(Cursor cursor, MediaTable table) {
+		table.addRow(cursor.getLong(0), cursor.getString(2), cursor.getLong(3), cursor.getLong(4), cursor.getInt(5),
+				cursor.getInt(6), cursor.getLong(7), parseType(cursor.getString(1)), cursor.getString(11));
+	}
+
+	private static MediaItems.MediaType parseType(String name) {
+		try {
+			return MediaItems.MediaType.valueOf(name);
+		} catch (Exception e) {
+			return MediaItems.MediaType.IMAGE;
+		}
+	}
+
+	private static Uri contentUri(long id, boolean isVideo) {
+		return ContentUris.withAppendedId(
+				isVideo ? MediaStore.Video.Media.EXTERNAL_CONTENT_URI : MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
+				id);
+	}
+
+	private static void bindStringOrNull(SQLiteStatement statement, int index, String value) {
+		if (value == null) {
+			statement.bindNull(index);
+		} else {
+			statement.bindString(index, value);
+		}
+	}
+}
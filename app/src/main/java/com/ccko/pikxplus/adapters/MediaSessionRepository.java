@@ -0,0 +1,336 @@
+package com.ccko.pikxplus.adapters;
+
+import android.content.Context;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import com.ccko.pikxplus.utils.TaskScheduler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The media lists viewers page through, handed over by a small session id
+ * instead of a Parcelable copy in the fragment arguments.
+ *
+ * A session is a MediaTable.copy() of what the grid showed when it was opened
+ * (columnar, so copying 20k items is one array copy per column). Viewers read
+ * it by reference, the viewer and the video player it opens share one. Each
+ * session is also written to a small file in the cache dir in the background,
+ * from another copy() taken when the write is queued (the viewer keeps
+ * changing its list meanwhile), so after process death the restored fragment's
+ * id still finds its list.
+ * A grid that had only loaded the first pages of its album opens the session
+ * with those and where they came from (AlbumPages); the viewer then asks for
+ * the next page through loadMore() as it gets close to the end, so nothing
+ * beyond what's looked at is read.
+ * Only the last few sessions are kept, in memory and on disk.
+ */
+public class MediaSessionRepository {
+
+	private static final String TAG = "MediaSessionRepository";
+
+	/** Fragment argument holding the session id. */
+	public static final String ARG_SESSION_ID = "media_session_id";
+	public static final int NO_SESSION = -1;
+
+	private static final int MAX_SESSIONS = 4;
+	private static final int MAGIC = 0x50584d53; // "PXMS"
+	private static final int FORMAT_VERSION = 2;
+	private static final int PAGE_SIZE = 300;
+	private static final int PAGE_OVERLAP = 4; // rows a page starts early, in case some were deleted meanwhile
+
+	private static volatile MediaSessionRepository instance;
+
+	private final Context appContext;
+	private final File dir;
+	private final Handler mainHandler = new Handler(Looper.getMainLooper());
+	private int nextId; // guarded by this
+	private final Map<Integer, Session> sessions = new LinkedHashMap<Integer, Session>() {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, Session> eldest) {
+			if (size() <= MAX_SESSIONS)
+				return false;
+			eldest.getValue().cancelPage(); // its pages die with it
+			return true;
+		}
+	};
+
+	/**
+	 * Where the rest of a session's list comes from: the album the grid was
+	 * paging through, in the same order.
+	 */
+	public static final class AlbumPages {
+		final String albumId;
+		final String albumName;
+		final String folderName;
+		final MediaStoreHelper.PageOrder order;
+
+		public AlbumPages(String albumId, String albumName, String folderName, MediaStoreHelper.PageOrder order) {
+			this.albumId = albumId;
+			this.albumName = albumName;
+			this.folderName = folderName;
+			this.order = order;
+		}
+	}
+
+	// Paging state is only touched on the main thread
+	private static final class Session {
+		final MediaTable items;
+		AlbumPages pages; // null once the whole album is in
+		int nextOffset; // album position the next page starts at
+		TaskScheduler.Task pageTask;
+		CancellationSignal pageCancellation;
+
+		Session(MediaTable items, AlbumPages pages, int nextOffset) {
+			this.items = items;
+			this.pages = pages;
+			this.nextOffset = nextOffset;
+		}
+
+		void cancelPage() {
+			if (pageCancellation != null) {
+				pageCancellation.cancel();
+			}
+			if (pageTask != null) {
+				pageTask.cancel();
+			}
+		}
+	}
+
+	public static MediaSessionRepository getInstance(Context context) {
+		if (instance == null) {
+			synchronized (MediaSessionRepository.class) {
+				if (instance == null) {
+					instance = new MediaSessionRepository(context.getApplicationContext());
+				}
+			}
+		}
+		return instance;
+	}
+
+	private MediaSessionRepository(Context appContext) {
+		this.appContext = appContext;
+		dir = new File(appContext.getCacheDir(), "media_sessions");
+		// Carry on after the ids of the previous process, their files may still be restored
+		int maxId = 0;
+		String[] files = dir.list();
+		if (files != null) {
+			for (String name : files) {
+				maxId = Math.max(maxId, parseId(name));
+			}
+		}
+		nextId = maxId + 1;
+	}
+
+	/**
+	 * Start a session with a copy of the items in their current list order.
+	 * Returns its id for the fragment arguments.
+	 */
+	public int open(MediaTable items) {
+		return open(items, null, 0);
+	}
+
+	/**
+	 * Same, for a list that's only the first pages of an album: the viewer reads
+	 * the pages from nextOffset on through loadMore() when it needs them.
+	 */
+	public int open(MediaTable items, AlbumPages pages, int nextOffset) {
+		Session session = new Session(items.copy(), pages, nextOffset);
+
+		int id;
+		synchronized (this) {
+			id = nextId++;
+			sessions.put(id, session);
+		}
+		persist(id, session);
+		deleteFile(id - MAX_SESSIONS);
+		return id;
+	}
+
+	/**
+	 * The session's list, read back from disk if the process was restarted.
+	 * Null if it's unknown or gone.
+	 */
+	public List<MediaItems> get(int sessionId) {
+		if (sessionId == NO_SESSION)
+			return null;
+		synchronized (this) {
+			Session session = sessions.get(sessionId);
+			if (session != null)
+				return session.items;
+		}
+
+		// Restore path: rare (process death), one small sequential read
+		Session restored = read(sessionId);
+		if (restored == null)
+			return null;
+		synchronized (this) {
+			Session session = sessions.get(sessionId);
+			if (session != null)
+				return session.items;
+			sessions.put(sessionId, restored);
+			return restored.items;
+		}
+	}
+
+	/**
+	 * Read the next page of a session opened with AlbumPages, unless the whole
+	 * album is in or a page is already on its way. The page is appended to the
+	 * session's list on the main thread; call from there too. Not written to the
+	 * session's file: a restored session pages on from what was saved.
+	 */
+	public void loadMore(int sessionId) {
+		Session session;
+		synchronized (this) {
+			session = sessions.get(sessionId);
+		}
+		if (session == null || session.pages == null || session.pageTask != null)
+			return;
+
+		AlbumPages pages = session.pages;
+		int offset = Math.max(0, session.nextOffset - PAGE_OVERLAP);
+		int limit = PAGE_SIZE + (session.nextOffset - offset);
+		CancellationSignal cancellation = new CancellationSignal();
+		session.pageCancellation = cancellation;
+		session.pageTask = TaskScheduler.get().submit(TaskScheduler.Lane.PREFETCH, null, () -> {
+			MediaTable page = MediaIndex.loadAlbumPage(appContext, pages.albumId, pages.albumName, pages.folderName,
+					pages.order, limit, offset, cancellation);
+			if (cancellation.isCanceled())
+				return;
+			mainHandler.post(() -> appendPage(session, page, offset, limit));
+		});
+	}
+
+	private void appendPage(Session session, MediaTable page, int offset, int limit) {
+		session.pageTask = null;
+		session.pageCancellation = null;
+
+		// The page starts a few rows early: skip up to the session's last item, or
+		// (if that one was deleted) as many rows as were expected to overlap
+		int from = Math.min(session.nextOffset - offset, page.size());
+		MediaTable items = session.items;
+		if (!items.isEmpty()) {
+			long lastId = items.idAt(items.row(items.size() - 1));
+			for (int position = 0; position < Math.min(2 * PAGE_OVERLAP, page.size()); position++) {
+				if (page.idAt(page.row(position)) == lastId) {
+					from = position + 1;
+					break;
+				}
+			}
+		}
+		items.addRows(page, from, page.size());
+		session.nextOffset = offset + page.size();
+		if (page.size() < limit) {
+			session.pages = null; // end of the album
+		}
+	}
+
+	/**
+	 * Rewrite a session's file after its list changed (e.g. an item was deleted).
+	 */
+	public void update(int sessionId) {
+		Session session;
+		synchronized (this) {
+			session = sessions.get(sessionId);
+		}
+		if (session != null) {
+			persist(sessionId, session);
+		}
+	}
+
+	// Written from a copy, so the viewer can keep changing the live list
+	private void persist(int id, Session session) {
+		Session copy = new Session(session.items.copy(), session.pages, session.nextOffset);
+		TaskScheduler.get().submit(TaskScheduler.Lane.BACKGROUND, null, () -> write(id, copy));
+	}
+
+	private synchronized void write(int id, Session session) {
+		AtomicFile file = fileFor(id);
+		FileOutputStream stream = null;
+		try {
+			if (!dir.isDirectory() && !dir.mkdirs()) {
+				throw new IOException("Can't create " + dir);
+			}
+			stream = file.startWrite();
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			session.items.writeTo(out, session.items.size());
+			AlbumPages pages = session.pages;
+			out.writeBoolean(pages != null);
+			if (pages != null) {
+				MediaTable.writeNullableString(out, pages.albumId);
+				MediaTable.writeNullableString(out, pages.albumName);
+				MediaTable.writeNullableString(out, pages.folderName);
+				out.writeByte(pages.order.ordinal());
+				out.writeInt(session.nextOffset);
+			}
+			out.flush();
+			file.finishWrite(stream);
+		} catch (IOException e) {
+			Log.w(TAG, "Error saving media session " + id, e);
+			if (stream != null) {
+				file.failWrite(stream);
+			}
+		}
+	}
+
+	private synchronized Session read(int id) {
+		AtomicFile file = fileFor(id);
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(file.openRead()))) {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION)
+				return null;
+			MediaTable items = MediaTable.readFrom(in);
+			if (!in.readBoolean())
+				return new Session(items, null, 0);
+			String albumId = MediaTable.readNullableString(in);
+			String albumName = MediaTable.readNullableString(in);
+			String folderName = MediaTable.readNullableString(in);
+			int order = in.readUnsignedByte();
+			if (order >= MediaStoreHelper.PageOrder.values().length) {
+				throw new IOException("Bad page order " + order);
+			}
+			AlbumPages pages = new AlbumPages(albumId, albumName, folderName,
+					MediaStoreHelper.PageOrder.values()[order]);
+			return new Session(items, pages, in.readInt());
+		} catch (FileNotFoundException e) {
+			return null;
+		} catch (IOException | RuntimeException e) {
+			Log.w(TAG, "Dropping unreadable media session " + id, e);
+			file.delete();
+			return null;
+		}
+	}
+
+	private void deleteFile(int id) {
+		if (id > 0) {
+			TaskScheduler.get().submit(TaskScheduler.Lane.BACKGROUND, null, () -> fileFor(id).delete());
+		}
+	}
+
+	private AtomicFile fileFor(int id) {
+		return new AtomicFile(new File(dir, id + ".bin"));
+	}
+
+	private static int parseId(String fileName) {
+		int end = fileName.indexOf('.');
+		try {
+			return Integer.parseInt(end < 0 ? fileName : fileName.substring(0, end));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+}
@@ -5,6 +5,9 @@ import android.content.ContentUris;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
 import android.provider.MediaStore;
 import android.util.Log;
 
@@ -13,6 +16,8 @@ import com.ccko.pikxplus.adapters.MediaItems;
 
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,26 +30,184 @@ public class MediaStoreHelper {
 
 	private static final String TAG = "MediaStoreHelper";
 
+	// Images + videos in MediaStore.Files
+	private static final String MEDIA_TYPE_SELECTION = MediaStore.Files.FileColumns.MEDIA_TYPE + " IN ("
+			+ MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE + "," + MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO
+			+ ")";
+
+	// Cursor loops look at the cancellation signal every this many rows
+	private static final int CANCEL_CHECK_ROWS = 64;
+
+	/**
+	 * True once the signal is cancelled or the calling thread was interrupted
+	 * (TaskScheduler cancels a running task by interrupting it). Null means not cancellable.
+	 */
+	static boolean isCanceled(CancellationSignal signal) {
+		return (signal != null && signal.isCanceled()) || Thread.currentThread().isInterrupted();
+	}
+
+	// Cheap per-row check: only every CANCEL_CHECK_ROWS rows asks the signal
+	static boolean isCanceled(CancellationSignal signal, int row) {
+		return row % CANCEL_CHECK_ROWS == 0 && isCanceled(signal);
+	}
+
 	/**
 	 * Load all albums with separate photo and video counts.
-	 * Based on your existing loadAlbumsFromMediaStore() logic.
+	 * One query over MediaStore.Files covers both media types; where the provider
+	 * accepts a GROUP BY the counting is done by the database (one row per album).
 	 */
 	public static List<AlbumInfo> loadAlbums(Context context) {
-		List<AlbumInfo> albums = new ArrayList<>();
+		return loadAlbums(context, null);
+	}
+
+	/**
+	 * Same, cancellable: a cancelled load stops scanning and returns an empty list.
+	 */
+	public static List<AlbumInfo> loadAlbums(Context context, CancellationSignal cancellationSignal) {
+		Map<String, AlbumInfo> albumMap = loadAlbumsGrouped(context, cancellationSignal);
+
+		if (albumMap == null && !isCanceled(cancellationSignal)) {
+			// Provider rejected the grouped query, aggregate in a single cursor pass instead
+			albumMap = loadAlbumsSinglePass(context, cancellationSignal);
+		}
+		if (albumMap == null || isCanceled(cancellationSignal)) {
+			return new ArrayList<>();
+		}
+
+		return withAllMediaAlbum(albumMap.values());
+	}
+
+	/**
+	 * Per-album counts computed by MediaProvider: one row per (bucket, media type).
+	 * Returns null if the platform doesn't allow group-by / aggregate projections.
+	 */
+	private static Map<String, AlbumInfo> loadAlbumsGrouped(Context context, CancellationSignal signal) {
+		String[] projection = { MediaStore.Files.FileColumns.BUCKET_ID,
+				MediaStore.Files.FileColumns.BUCKET_DISPLAY_NAME, MediaStore.Files.FileColumns.RELATIVE_PATH,
+				MediaStore.Files.FileColumns.VOLUME_NAME, MediaStore.Files.FileColumns.MEDIA_TYPE,
+				MediaStore.Files.FileColumns._ID,
+				"MAX(" + MediaStore.Files.FileColumns.DATE_MODIFIED + ") AS latest", "COUNT(*) AS item_count" };
+
+		Bundle queryArgs = new Bundle();
+		queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, MEDIA_TYPE_SELECTION);
+		queryArgs.putString(ContentResolver.QUERY_ARG_SQL_GROUP_BY,
+				MediaStore.Files.FileColumns.BUCKET_ID + ", " + MediaStore.Files.FileColumns.MEDIA_TYPE);
+		queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SORT_ORDER, "latest DESC");
+
 		Map<String, AlbumInfo> albumMap = new LinkedHashMap<>();
+		try (Cursor cursor = context.getContentResolver().query(MediaStore.Files.getContentUri("external"),
+				projection, queryArgs, signal)) {
+			if (cursor == null)
+				return null;
+
+			// Provider silently ignored the group-by: not the shape we asked for
+			Bundle extras = cursor.getExtras();
+			String[] honored = extras == null ? null
+					: extras.getStringArray(ContentResolver.EXTRA_HONORED_ARGS);
+			if (honored != null && !Arrays.asList(honored).contains(ContentResolver.QUERY_ARG_SQL_GROUP_BY))
+				return null;
+
+			int bucketIdCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.BUCKET_ID);
+			int bucketNameCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.BUCKET_DISPLAY_NAME);
+			int relativePathCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.RELATIVE_PATH);
+			int volumeNameCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.VOLUME_NAME);
+			int mediaTypeCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.MEDIA_TYPE);
+			int idCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns._ID);
+			int countCol = cursor.getColumnIndexOrThrow("item_count");
+
+			// Rows come newest first, so each album is inserted at the position of its newest item
+			for (int row = 0; cursor.moveToNext(); row++) {
+				if (isCanceled(signal, row))
+					return null;
+				boolean isVideo = cursor.getInt(mediaTypeCol) == MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO;
+				// _ID is taken from the row holding MAX(date_modified), i.e. the newest item of the group
+				addToAlbum(albumMap, cursor.getString(bucketIdCol), cursor.getString(bucketNameCol),
+						cursor.getString(relativePathCol), cursor.getString(volumeNameCol), cursor.getLong(idCol),
+						isVideo, cursor.getInt(countCol));
+			}
+		} catch (OperationCanceledException e) {
+			return null;
+		} catch (Exception e) {
+			Log.w(TAG, "Grouped album query not supported, falling back to single pass", e);
+			return null;
+		}
+		return albumMap;
+	}
 
-		// Query images first
-		loadImageAlbums(context, albumMap);
+	/**
+	 * One walk over every image and video row, newest first.
+	 */
+	private static Map<String, AlbumInfo> loadAlbumsSinglePass(Context context, CancellationSignal signal) {
+		String[] projection = { MediaStore.Files.FileColumns.BUCKET_ID,
+				MediaStore.Files.FileColumns.BUCKET_DISPLAY_NAME, MediaStore.Files.FileColumns.RELATIVE_PATH,
+				MediaStore.Files.FileColumns.VOLUME_NAME, MediaStore.Files.FileColumns.MEDIA_TYPE,
+				MediaStore.Files.FileColumns._ID };
 
-		// Then query videos and merge counts
-		loadVideoAlbums(context, albumMap);
+		Map<String, AlbumInfo> albumMap = new LinkedHashMap<>();
+		try (Cursor cursor = context.getContentResolver().query(MediaStore.Files.getContentUri("external"),
+				projection, MEDIA_TYPE_SELECTION, null, MediaStore.Files.FileColumns.DATE_MODIFIED + " DESC",
+				signal)) {
+			if (cursor == null || cursor.getCount() == 0)
+				return albumMap;
+
+			int bucketIdCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.BUCKET_ID);
+			int bucketNameCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.BUCKET_DISPLAY_NAME);
+			int relativePathCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.RELATIVE_PATH);
+			int volumeNameCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.VOLUME_NAME);
+			int mediaTypeCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.MEDIA_TYPE);
+			int idCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns._ID);
+
+			for (int row = 0; cursor.moveToNext(); row++) {
+				if (isCanceled(signal, row))
+					return null;
+				boolean isVideo = cursor.getInt(mediaTypeCol) == MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO;
+				addToAlbum(albumMap, cursor.getString(bucketIdCol), cursor.getString(bucketNameCol),
+						cursor.getString(relativePathCol), cursor.getString(volumeNameCol), cursor.getLong(idCol),
+						isVideo, 1);
+			}
+		} catch (OperationCanceledException e) {
+			return null;
+		} catch (Exception e) {
+			Log.e(TAG, "Error loading albums", e);
+		}
+		return albumMap;
+	}
+
+	/**
+	 * Add count items of one media type to an album. Must be fed newest first:
+	 * the thumbnail is the newest photo, or the newest video for video-only albums.
+	 */
+	private static void addToAlbum(Map<String, AlbumInfo> albumMap, String bucketId, String bucketName,
+			String relativePath, String volumeName, long newestId, boolean isVideo, int count) {
+		AlbumInfo album = albumMap.get(bucketId);
+		if (album == null) {
+			Uri thumbnailUri = ContentUris.withAppendedId(isVideo ? MediaStore.Video.Media.EXTERNAL_CONTENT_URI
+					: MediaStore.Images.Media.EXTERNAL_CONTENT_URI, newestId);
+			album = new AlbumInfo(bucketId, bucketName, 0, 0, thumbnailUri, relativePath, volumeName);
+			albumMap.put(bucketId, album);
+		} else if (!isVideo && album.photoCount == 0) {
+			// First photo of an album that so far only had videos: prefer the photo thumbnail
+			album.thumbnailUri = ContentUris.withAppendedId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, newestId);
+		}
+
+		if (isVideo) {
+			album.videoCount += count;
+		} else {
+			album.photoCount += count;
+		}
+	}
 
-		// Create "All Media" album if there's content
+	/**
+	 * Prepend the "All Media" album (totals of every album) when there's content.
+	 * Shared by the MediaStore scan and the MediaIndex.
+	 */
+	static List<AlbumInfo> withAllMediaAlbum(Collection<AlbumInfo> albumList) {
+		List<AlbumInfo> albums = new ArrayList<>();
 		int totalPhotos = 0;
 		int totalVideos = 0;
 		Uri latestThumbnail = null;
 
-		for (AlbumInfo album : albumMap.values()) {
+		for (AlbumInfo album : albumList) {
 			totalPhotos += album.photoCount;
 			totalVideos += album.videoCount;
 			if (latestThumbnail == null) {
@@ -59,295 +222,159 @@ public class MediaStoreHelper {
 		}
 
 		// Add individual albums
-		albums.addAll(albumMap.values());
+		albums.addAll(albumList);
 
 		return albums;
 	}
 
-	/**
-	 * Load image albums and populate the map
-	 */
-	public static void loadImageAlbums(Context context, Map<String, AlbumInfo> albumMap) {
-		String[] projection = { MediaStore.Images.Media.BUCKET_ID, MediaStore.Images.Media.BUCKET_DISPLAY_NAME,
-				MediaStore.Images.Media._ID, MediaStore.Images.Media.RELATIVE_PATH,
-				MediaStore.Images.Media.VOLUME_NAME };
-
-		try (Cursor cursor = context.getContentResolver().query(MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
-				projection, null, null, MediaStore.Images.Media.DATE_TAKEN + " DESC")) {
-			if (cursor == null || cursor.getCount() == 0)
-				return;
-
-			int bucketIdCol = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.BUCKET_ID);
-			int bucketNameCol = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.BUCKET_DISPLAY_NAME);
-			int idCol = cursor.getColumnIndexOrThrow(MediaStore.Images.Media._ID);
-			int relativePathCol = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.RELATIVE_PATH);
-			int volumeNameCol = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.VOLUME_NAME);
-
-			while (cursor.moveToNext()) {
-				String bucketId = cursor.getString(bucketIdCol);
-				String bucketName = cursor.getString(bucketNameCol);
-				long imageId = cursor.getLong(idCol);
-				String relativePath = cursor.getString(relativePathCol);
-				String volumeName = cursor.getString(volumeNameCol);
-
-				Uri thumbnailUri = ContentUris.withAppendedId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, imageId);
-
-				AlbumInfo album = albumMap.get(bucketId);
-				if (album == null) {
-					album = new AlbumInfo(bucketId, bucketName, 1, // photoCount
-							0, // videoCount
-							thumbnailUri, relativePath, volumeName);
-					albumMap.put(bucketId, album);
-				} else {
-					album.photoCount++;
-					album.thumbnailUri = thumbnailUri; // Update to latest
-				}
-			}
-		} catch (Exception e) {
-			Log.e(TAG, "Error loading image albums", e);
-		}
-	}
-
-	/**
-	 * Load video albums and merge into existing map
-	 */
-	public static void loadVideoAlbums(Context context, Map<String, AlbumInfo> albumMap) {
-		String[] projection = { MediaStore.Video.Media.BUCKET_ID, MediaStore.Video.Media.BUCKET_DISPLAY_NAME,
-				MediaStore.Video.Media._ID, MediaStore.Video.Media.RELATIVE_PATH, MediaStore.Video.Media.VOLUME_NAME };
-
-		try (Cursor cursor = context.getContentResolver().query(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, projection,
-				null, null, MediaStore.Video.Media.DATE_TAKEN + " DESC")) {
-			if (cursor == null || cursor.getCount() == 0)
-				return;
-
-			int bucketIdCol = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.BUCKET_ID);
-			int bucketNameCol = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.BUCKET_DISPLAY_NAME);
-			int idCol = cursor.getColumnIndexOrThrow(MediaStore.Video.Media._ID);
-			int relativePathCol = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.RELATIVE_PATH);
-			int volumeNameCol = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.VOLUME_NAME);
-
-			while (cursor.moveToNext()) {
-				String bucketId = cursor.getString(bucketIdCol);
-				String bucketName = cursor.getString(bucketNameCol);
-				long videoId = cursor.getLong(idCol);
-				String relativePath = cursor.getString(relativePathCol);
-				String volumeName = cursor.getString(volumeNameCol);
-
-				Uri thumbnailUri = ContentUris.withAppendedId(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, videoId);
-
-				AlbumInfo album = albumMap.get(bucketId);
-				if (album == null) {
-					// Video-only album
-					album = new AlbumInfo(bucketId, bucketName, 0, // photoCount
-							1, // videoCount
-							thumbnailUri, relativePath, volumeName);
-					albumMap.put(bucketId, album);
-				} else {
-					// Album already has photos, increment video count
-					album.videoCount++;
-					// Keep photo thumbnail if it exists, otherwise use video
-					if (album.photoCount == 0) {
-						album.thumbnailUri = thumbnailUri;
-					}
-				}
-			}
-		} catch (Exception e) {
-			Log.e(TAG, "Error loading video albums", e);
-		}
-	}
-    
     	/**
 	 * Load media items (photos + videos) for a specific album.
 	 * Based on your existing loadPhotosFromMediaStore() logic.
 	 */
-	public static List<MediaItems> loadMediaForAlbum(Context context, String albumId, String albumName,
+	public static MediaTable loadMediaForAlbum(Context context, String albumId, String albumName,
 			String folderName) {
-		List<MediaItems> items = new ArrayList<>();
-
-		// Load images
-		items.addAll(loadImagesForAlbum(context, albumId, albumName, folderName));
-
-		// Load videos
-		items.addAll(loadVideosForAlbum(context, albumId, albumName, folderName));
+		return loadMediaForAlbum(context, albumId, albumName, folderName, null);
+	}
 
-		return items;
+	/**
+	 * Same, cancellable: a cancelled load returns an empty table. One
+	 * MediaStore.Files query, newest first, the whole album.
+	 */
+	public static MediaTable loadMediaForAlbum(Context context, String albumId, String albumName,
+			String folderName, CancellationSignal cancellationSignal) {
+		return loadMediaPage(context, albumId, albumName, folderName, PageOrder.DATE_DESC, 0, 0, cancellationSignal);
 	}
     
 	/**
-	 * Load images for a specific album with progressive loading support
+	 * Orders that both MediaStore and the MediaIndex can sort by, which is what
+	 * makes database-side paging possible (natural name order can't be paged).
 	 */
-	public static List<MediaItems> loadImagesForAlbum(Context context, String albumId, String albumName,
-			String folderName) {
-		return loadImagesForAlbum(context, albumId, albumName, folderName, 0, 0);
+	public enum PageOrder {
+		DATE_DESC(MediaStore.MediaColumns.DATE_MODIFIED + " DESC, " + MediaStore.MediaColumns._ID + " DESC",
+				"date_modified DESC, _id DESC"),
+		DATE_ASC(MediaStore.MediaColumns.DATE_MODIFIED + " ASC, " + MediaStore.MediaColumns._ID + " ASC",
+				"date_modified ASC, _id ASC"),
+		SIZE_DESC(MediaStore.MediaColumns.SIZE + " DESC, " + MediaStore.MediaColumns._ID + " DESC",
+				"size DESC, _id DESC"),
+		SIZE_ASC(MediaStore.MediaColumns.SIZE + " ASC, " + MediaStore.MediaColumns._ID + " ASC", "size ASC, _id ASC");
+
+		final String mediaStoreOrder;
+		final String indexOrder;
+
+		PageOrder(String mediaStoreOrder, String indexOrder) {
+			this.mediaStoreOrder = mediaStoreOrder;
+			this.indexOrder = indexOrder;
+		}
 	}
 
 	/**
-	 * Load images for a specific album with pagination support (for progressive loading)
-	 * limit = 0 means load all, offset = starting position
+	 * Load one page of an album's photos + videos in a single MediaStore.Files query.
+	 * Only the requested rows are read: limit/offset are applied by the provider.
 	 */
-	public static List<MediaItems> loadImagesForAlbum(Context context, String albumId, String albumName,
-			String folderName, int limit, int offset) {
-		List<MediaItems> images = new ArrayList<>();
-
-		String[] projection = { MediaStore.Images.Media._ID, MediaStore.Images.Media.DISPLAY_NAME,
-				MediaStore.Images.Media.DATE_MODIFIED, MediaStore.Images.Media.SIZE, MediaStore.Images.Media.WIDTH,
-				MediaStore.Images.Media.HEIGHT, MediaStore.Images.Media.BUCKET_ID,
-				MediaStore.Images.Media.BUCKET_DISPLAY_NAME, MediaStore.Images.Media.RELATIVE_PATH,
-				MediaStore.Images.Media.VOLUME_NAME, MediaStore.Images.Media.MIME_TYPE };
-
-		String selection;
-		String[] selectionArgs;
-
-		// Handle "all_media" special case
-		if (albumId != null && albumId.equals("all_media")) {
-			selection = null;
-			selectionArgs = null;
-		} else if (albumName != null && !albumName.isEmpty()) {
-			selection = MediaStore.Images.Media.BUCKET_DISPLAY_NAME + " = ?";
-			selectionArgs = new String[] { albumName };
-		} else if (folderName != null && !folderName.isEmpty()) {
-			selection = MediaStore.Images.Media.RELATIVE_PATH + " = ?";
-			selectionArgs = new String[] { folderName };
-		} else {
-			selection = MediaStore.Images.Media.BUCKET_ID + " = ?";
-			selectionArgs = new String[] { albumId };
-		}
+	public static MediaTable loadMediaPage(Context context, String albumId, String albumName,
+			String folderName, PageOrder order, int limit, int offset) {
+		return loadMediaPage(context, albumId, albumName, folderName, order, limit, offset, null);
+	}
 
-		try (Cursor cursor = context.getContentResolver().query(MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
-				projection, selection, selectionArgs, MediaStore.Images.Media.DATE_MODIFIED + " DESC")) {
+	/**
+	 * Same, cancellable: a cancelled load returns an empty table.
+	 */
+	public static MediaTable loadMediaPage(Context context, String albumId, String albumName,
+			String folderName, PageOrder order, int limit, int offset, CancellationSignal cancellationSignal) {
+		MediaTable items = new MediaTable(limit > 0 ? limit : 64);
+
+		String[] projection = { MediaStore.Files.FileColumns._ID, MediaStore.Files.FileColumns.MEDIA_TYPE,
+				MediaStore.Files.FileColumns.DISPLAY_NAME, MediaStore.Files.FileColumns.DATE_MODIFIED,
+				MediaStore.Files.FileColumns.SIZE, MediaStore.Files.FileColumns.WIDTH,
+				MediaStore.Files.FileColumns.HEIGHT, MediaStore.Files.FileColumns.DURATION,
+				MediaStore.Files.FileColumns.VOLUME_NAME, MediaStore.Files.FileColumns.MIME_TYPE };
+
+		Bundle queryArgs = albumQueryArgs(albumId, albumName, folderName, order.mediaStoreOrder, limit, offset);
+		String albumSelection = queryArgs.getString(ContentResolver.QUERY_ARG_SQL_SELECTION);
+		queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, albumSelection == null ? MEDIA_TYPE_SELECTION
+				: MEDIA_TYPE_SELECTION + " AND " + albumSelection);
+		AnimatedImageClassifier classifier = AnimatedImageClassifier.getInstance(context);
+
+		try (Cursor cursor = context.getContentResolver().query(MediaStore.Files.getContentUri("external"),
+				projection, queryArgs, cancellationSignal)) {
 			if (cursor == null)
-				return images;
-
-			int idCol = cursor.getColumnIndexOrThrow(MediaStore.Images.Media._ID);
-			int nameCol = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.DISPLAY_NAME);
-			int dateCol = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.DATE_MODIFIED);
-			int sizeCol = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.SIZE);
-			int widthCol = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.WIDTH);
-			int heightCol = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.HEIGHT);
-			int mimeTypeCol = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.MIME_TYPE);
-			int volumeNameCol = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.VOLUME_NAME);
-
-			// Move to offset position if specified
-			if (offset > 0 && !cursor.moveToPosition(offset)) {
-				return images; // Cannot move to requested offset
-			}
-
-			int count = 0;
-			while (cursor.moveToNext() && (limit == 0 || count < limit)) {
+				return items;
+
+			int idCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns._ID);
+			int mediaTypeCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.MEDIA_TYPE);
+			int nameCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.DISPLAY_NAME);
+			int dateCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.DATE_MODIFIED);
+			int sizeCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.SIZE);
+			int widthCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.WIDTH);
+			int heightCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.HEIGHT);
+			int durationCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.DURATION);
+			int volumeNameCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.VOLUME_NAME);
+			int mimeTypeCol = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.MIME_TYPE);
+
+			for (int row = 0; cursor.moveToNext(); row++) {
+				if (isCanceled(cancellationSignal, row)) {
+					items.clear();
+					return items;
+				}
 				long id = cursor.getLong(idCol);
+				boolean isVideo = cursor.getInt(mediaTypeCol) == MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO;
 				String name = cursor.getString(nameCol);
 				long dateModified = cursor.getLong(dateCol);
 				long size = cursor.getLong(sizeCol);
 				int width = cursor.getInt(widthCol);
 				int height = cursor.getInt(heightCol);
-				String mimeType = cursor.getString(mimeTypeCol);
 				String volumeName = cursor.getString(volumeNameCol);
 
-				Uri uri = ContentUris.withAppendedId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, id);
-
-				// Detect animated images
-				MediaItems.MediaType type = detectImageType(context, uri, mimeType);
-
-				MediaItems item = new MediaItems(String.valueOf(id), name, dateModified, size, uri, width, height,
-						type);
-				item.volumeName = volumeName;
-				item.isOnSdCard = !volumeName.equals("external_primary");
-
-				images.add(item);
-				count++;
+				// Straight into the table, Uris and MediaItems are only built on bind
+				if (isVideo) {
+					items.addRow(id, name, dateModified, size, width, height, cursor.getLong(durationCol),
+							MediaItems.MediaType.VIDEO, volumeName);
+				} else {
+					MediaItems.MediaType type = classifier.typeFor(id, dateModified, cursor.getString(mimeTypeCol));
+					items.addRow(id, name, dateModified, size, width, height, 0, type, volumeName);
+				}
 			}
+		} catch (OperationCanceledException e) {
+			items.clear();
 		} catch (Exception e) {
-			Log.e(TAG, "Error loading images", e);
+			Log.e(TAG, "Error loading media page", e);
 		}
 
-		return images;
-	}
-
-	/**
-	 * Load videos for a specific album with progressive loading support
-	 */
-	public static List<MediaItems> loadVideosForAlbum(Context context, String albumId, String albumName,
-			String folderName) {
-		return loadVideosForAlbum(context, albumId, albumName, folderName, 0, 0);
+		return items;
 	}
 
 	/**
-	 * Load videos for a specific album with pagination support (for progressive loading)
-	 * limit = 0 means load all, offset = starting position
+	 * Query args selecting one album (same rules for images, videos and files),
+	 * with sort order and optional provider-side paging. limit = 0 means no limit:
+	 * everything from offset on.
 	 */
-	public static List<MediaItems> loadVideosForAlbum(Context context, String albumId, String albumName,
-			String folderName, int limit, int offset) {
-		List<MediaItems> videos = new ArrayList<>();
-
-		String[] projection = { MediaStore.Video.Media._ID, MediaStore.Video.Media.DISPLAY_NAME,
-				MediaStore.Video.Media.DATE_MODIFIED, MediaStore.Video.Media.SIZE, MediaStore.Video.Media.WIDTH,
-				MediaStore.Video.Media.HEIGHT, MediaStore.Video.Media.DURATION, MediaStore.Video.Media.BUCKET_ID,
-				MediaStore.Video.Media.BUCKET_DISPLAY_NAME, MediaStore.Video.Media.RELATIVE_PATH,
-				MediaStore.Video.Media.VOLUME_NAME };
-
-		String selection;
-		String[] selectionArgs;
+	private static Bundle albumQueryArgs(String albumId, String albumName, String folderName, String sortOrder,
+			int limit, int offset) {
+		Bundle queryArgs = new Bundle();
 
 		// Handle "all_media" special case
 		if (albumId != null && albumId.equals("all_media")) {
-			selection = null;
-			selectionArgs = null;
+			// no selection
 		} else if (albumName != null && !albumName.isEmpty()) {
-			selection = MediaStore.Video.Media.BUCKET_DISPLAY_NAME + " = ?";
-			selectionArgs = new String[] { albumName };
+			queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION,
+					MediaStore.MediaColumns.BUCKET_DISPLAY_NAME + " = ?");
+			queryArgs.putStringArray(ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS, new String[] { albumName });
 		} else if (folderName != null && !folderName.isEmpty()) {
-			selection = MediaStore.Video.Media.RELATIVE_PATH + " = ?";
-			selectionArgs = new String[] { folderName };
+			queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION,
+					MediaStore.MediaColumns.RELATIVE_PATH + " = ?");
+			queryArgs.putStringArray(ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS, new String[] { folderName });
 		} else {
-			selection = MediaStore.Video.Media.BUCKET_ID + " = ?";
-			selectionArgs = new String[] { albumId };
+			queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, MediaStore.MediaColumns.BUCKET_ID + " = ?");
+			queryArgs.putStringArray(ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS, new String[] { albumId });
 		}
 
-		try (Cursor cursor = context.getContentResolver().query(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, projection,
-				selection, selectionArgs, MediaStore.Video.Media.DATE_MODIFIED + " DESC")) {
-			if (cursor == null)
-				return videos;
-
-			int idCol = cursor.getColumnIndexOrThrow(MediaStore.Video.Media._ID);
-			int nameCol = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.DISPLAY_NAME);
-			int dateCol = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.DATE_MODIFIED);
-			int sizeCol = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.SIZE);
-			int widthCol = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.WIDTH);
-			int heightCol = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.HEIGHT);
-			int durationCol = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.DURATION);
-			int volumeNameCol = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.VOLUME_NAME);
-
-			// Move to offset position if specified
-			if (offset > 0 && !cursor.moveToPosition(offset)) {
-				return videos; // Cannot move to requested offset
-			}
-
-			int count = 0;
-			while (cursor.moveToNext() && (limit == 0 || count < limit)) {
-				long id = cursor.getLong(idCol);
-				String name = cursor.getString(nameCol);
-				long dateModified = cursor.getLong(dateCol);
-				long size = cursor.getLong(sizeCol);
-				int width = cursor.getInt(widthCol);
-				int height = cursor.getInt(heightCol);
-				long duration = cursor.getLong(durationCol);
-				String volumeName = cursor.getString(volumeNameCol);
-
-				Uri uri = ContentUris.withAppendedId(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, id);
-
-				MediaItems item = new MediaItems(String.valueOf(id), name, dateModified, size, uri, width, height,
-						duration);
-				item.volumeName = volumeName;
-				item.isOnSdCard = !volumeName.equals("external_primary");
-
-				videos.add(item);
-				count++;
-			}
-		} catch (Exception e) {
-			Log.e(TAG, "Error loading videos", e);
+		queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SORT_ORDER, sortOrder);
+		if (limit > 0 || offset > 0) {
+			// The provider only applies an offset together with a limit
+			queryArgs.putInt(ContentResolver.QUERY_ARG_LIMIT, limit > 0 ? limit : Integer.MAX_VALUE);
+			queryArgs.putInt(ContentResolver.QUERY_ARG_OFFSET, offset);
 		}
-
-		return videos;
+		return queryArgs;
 	}
 
 	// ... (keep the rest of the methods unchanged) ...
@@ -375,7 +402,11 @@ public class MediaStoreHelper {
 	}
 
 	// BETTER: Replace detectImageType with this more thorough check
-	private static MediaItems.MediaType detectImageType(Context context, Uri uri, String mimeType) {
+	/**
+	 * ANIMATED_IMAGE or IMAGE, or null if the header couldn't be read (the file
+	 * isn't known to be static then, check it again later).
+	 */
+	static MediaItems.MediaType detectImageType(Context context, Uri uri, String mimeType) {
 		if (mimeType == null) {
 			return MediaItems.MediaType.IMAGE;
 		}
@@ -388,29 +419,36 @@ public class MediaStoreHelper {
 		// Check animated WebP - need to read more than just header
 		if (mimeType.contains("webp")) {
 			try (InputStream is = context.getContentResolver().openInputStream(uri)) {
-				if (is != null) {
-					byte[] buffer = new byte[30]; // Read more bytes
-					int bytesRead = is.read(buffer);
-
-					if (bytesRead >= 30) {
-						// Check RIFF header
-						if (buffer[0] == 'R' && buffer[1] == 'I' && buffer[2] == 'F' && buffer[3] == 'F'
-								&& buffer[8] == 'W' && buffer[9] == 'E' && buffer[10] == 'B' && buffer[11] == 'P') {
-
-							// Check for VP8X chunk (extended format with animation)
-							if (buffer[12] == 'V' && buffer[13] == 'P' && buffer[14] == '8' && buffer[15] == 'X') {
-								// Byte 20 contains flags, bit 1 is animation flag
-								byte flags = buffer[20];
-								boolean hasAnimation = (flags & 0x02) != 0;
-
-								if (hasAnimation) {
-									return MediaItems.MediaType.ANIMATED_IMAGE;
-								}
+				if (is == null)
+					return null;
+				byte[] buffer = new byte[30]; // Read more bytes
+				int bytesRead = 0;
+				while (bytesRead < buffer.length) {
+					int read = is.read(buffer, bytesRead, buffer.length - bytesRead);
+					if (read < 0)
+						break; // a file this short has no animation chunk
+					bytesRead += read;
+				}
+
+				if (bytesRead >= 30) {
+					// Check RIFF header
+					if (buffer[0] == 'R' && buffer[1] == 'I' && buffer[2] == 'F' && buffer[3] == 'F'
+							&& buffer[8] == 'W' && buffer[9] == 'E' && buffer[10] == 'B' && buffer[11] == 'P') {
+
+						// Check for VP8X chunk (extended format with animation)
+						if (buffer[12] == 'V' && buffer[13] == 'P' && buffer[14] == '8' && buffer[15] == 'X') {
+							// Byte 20 contains flags, bit 1 is animation flag
+							byte flags = buffer[20];
+							boolean hasAnimation = (flags & 0x02) != 0;
+
+							if (hasAnimation) {
+								return MediaItems.MediaType.ANIMATED_IMAGE;
 							}
 						}
 					}
 				}
-			} catch (Exception ignored) {
+			} catch (Exception e) {
+				return null; // unreadable right now, not known to be static
 			}
 		}
 
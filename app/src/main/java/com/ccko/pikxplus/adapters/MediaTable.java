@@ -0,0 +1,644 @@
+package com.ccko.pikxplus.adapters;
+
+import android.content.ContentUris;
+import android.net.Uri;
+import android.provider.MediaStore;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * An album's media stored column by column (struct of arrays) instead of one
+ * MediaItems object per row. Ids, dates, sizes, dimensions and durations live in
+ * primitive arrays, Uris are built on demand and get() materializes a MediaItems
+ * only for the row being bound, so 20k-item albums don't cost 20k objects (plus
+ * their Strings and Uris) to load, sort or filter.
+ *
+ * Rows stay in load order; sorting only computes a permutation of them, using a
+ * comparator over row numbers, so it never boxes or allocates per compare. A
+ * permutation can be shown forwards or backwards, so ASC/DESC share one.
+ */
+public class MediaTable extends AbstractList<MediaItems> implements RandomAccess {
+
+	/**
+	 * Compares two rows of the table (row numbers, not list positions).
+	 */
+	public interface RowComparator {
+		int compare(int rowA, int rowB);
+	}
+
+	private static final MediaItems.MediaType[] TYPES = MediaItems.MediaType.values();
+	private static final int INITIAL_CAPACITY = 64;
+
+	private long[] ids;
+	private long[] dates;
+	private long[] sizes;
+	private long[] durations;
+	private int[] widths;
+	private int[] heights;
+	private byte[] types;
+	private byte[] volumes; // index into volumeNames, a device has only a few volumes
+	private String[] names;
+	// Natural sort keys: every name lower-cased once, packed into one char[]
+	private char[] keyChars = new char[1024];
+	private int[] keyStarts; // -1 for a null name
+	private int[] keyEnds;
+	private int keyLength;
+	private final List<String> volumeNames = new ArrayList<>();
+	private int rowCount;
+
+	// List position -> row, null while rows are shown in load order
+	private int[] order;
+	private boolean reversed; // order read from the end
+	private int version; // bumped whenever rows are added or removed
+
+	public MediaTable() {
+		this(INITIAL_CAPACITY);
+	}
+
+	public MediaTable(int capacity) {
+		capacity = Math.max(capacity, 1);
+		ids = new long[capacity];
+		dates = new long[capacity];
+		sizes = new long[capacity];
+		durations = new long[capacity];
+		widths = new int[capacity];
+		heights = new int[capacity];
+		types = new byte[capacity];
+		volumes = new byte[capacity];
+		names = new String[capacity];
+		keyStarts = new int[capacity];
+		keyEnds = new int[capacity];
+	}
+
+	// copy()
+	private MediaTable(MediaTable other) {
+		int capacity = Math.max(other.rowCount, 1);
+		ids = Arrays.copyOf(other.ids, capacity);
+		dates = Arrays.copyOf(other.dates, capacity);
+		sizes = Arrays.copyOf(other.sizes, capacity);
+		durations = Arrays.copyOf(other.durations, capacity);
+		widths = Arrays.copyOf(other.widths, capacity);
+		heights = Arrays.copyOf(other.heights, capacity);
+		types = Arrays.copyOf(other.types, capacity);
+		volumes = Arrays.copyOf(other.volumes, capacity);
+		names = Arrays.copyOf(other.names, capacity);
+		keyStarts = Arrays.copyOf(other.keyStarts, capacity);
+		keyEnds = Arrays.copyOf(other.keyEnds, capacity);
+		keyChars = Arrays.copyOf(other.keyChars, Math.max(other.keyLength, 1));
+		keyLength = other.keyLength;
+		volumeNames.addAll(other.volumeNames);
+		rowCount = other.rowCount;
+		order = other.order == null ? null : other.order.clone();
+		reversed = other.reversed;
+	}
+
+	/**
+	 * An independent copy of the table, list order included. One array copy per
+	 * column, no per-row work, so snapshotting 20k items is cheap enough for the
+	 * UI thread.
+	 */
+	public MediaTable copy() {
+		return new MediaTable(this);
+	}
+
+	/**
+	 * Append one row straight from cursor values, without building a MediaItems.
+	 */
+	public void addRow(long id, String name, long dateModified, long size, int width, int height, long duration,
+			MediaItems.MediaType type, String volumeName) {
+		ensureCapacity(rowCount + 1);
+		appendRow(id, name, dateModified, size, width, height, duration, type, volumeName);
+		extendOrder(rowCount - 1);
+	}
+
+	/**
+	 * Append the items at positions [from, to) of another table.
+	 */
+	public void addRows(MediaTable other, int from, int to) {
+		int firstRow = rowCount;
+		ensureCapacity(rowCount + (to - from));
+		for (int position = from; position < to; position++) {
+			int row = other.row(position);
+			appendRow(other.ids[row], other.names[row], other.dates[row], other.sizes[row], other.widths[row],
+					other.heights[row], other.durations[row], TYPES[other.types[row]],
+					other.volumeNames.get(other.volumes[row]));
+		}
+		extendOrder(firstRow);
+	}
+
+	/**
+	 * Append the items of another table (in its list order) whose row number is
+	 * set in the bitset, e.g. a SearchIndex match.
+	 */
+	public void addRowsWhere(MediaTable other, long[] rowBits) {
+		int firstRow = rowCount;
+		ensureCapacity(rowCount + SearchIndex.cardinality(rowBits));
+		for (int position = 0; position < other.rowCount; position++) {
+			int row = other.row(position);
+			if (SearchIndex.get(rowBits, row)) {
+				appendRow(other.ids[row], other.names[row], other.dates[row], other.sizes[row], other.widths[row],
+						other.heights[row], other.durations[row], TYPES[other.types[row]],
+						other.volumeNames.get(other.volumes[row]));
+			}
+		}
+		extendOrder(firstRow);
+	}
+
+	private void appendRow(long id, String name, long dateModified, long size, int width, int height, long duration,
+			MediaItems.MediaType type, String volumeName) {
+		int row = rowCount;
+		ids[row] = id;
+		names[row] = name;
+		dates[row] = dateModified;
+		sizes[row] = size;
+		widths[row] = width;
+		heights[row] = height;
+		durations[row] = duration;
+		types[row] = (byte) type.ordinal();
+		volumes[row] = (byte) volumeIndex(volumeName);
+		keyStarts[row] = appendKey(name);
+		keyEnds[row] = keyLength;
+		rowCount++;
+		version++;
+	}
+
+	// Lower-casing here once means comparisons never have to
+	private int appendKey(String name) {
+		if (name == null)
+			return -1;
+		int length = name.length();
+		if (keyLength + length > keyChars.length) {
+			keyChars = Arrays.copyOf(keyChars, Math.max(keyLength + length, keyChars.length * 2));
+		}
+		int start = keyLength;
+		for (int i = 0; i < length; i++) {
+			keyChars[start + i] = Character.toLowerCase(name.charAt(i));
+		}
+		keyLength += length;
+		return start;
+	}
+
+	// Rows appended while sorted go at the end of the current order
+	private void extendOrder(int firstNewRow) {
+		if (order == null || firstNewRow >= rowCount)
+			return;
+		if (reversed) {
+			int[] forward = new int[rowCount];
+			for (int i = 0; i < firstNewRow; i++) {
+				forward[i] = order[firstNewRow - 1 - i];
+			}
+			order = forward;
+			reversed = false;
+		} else {
+			order = Arrays.copyOf(order, rowCount);
+		}
+		for (int row = firstNewRow; row < rowCount; row++) {
+			order[row] = row;
+		}
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(names, 0, rowCount, null);
+		rowCount = 0;
+		keyLength = 0;
+		order = null;
+		reversed = false;
+		version++;
+	}
+
+	/**
+	 * Remove the item at a list position (e.g. one deleted in the viewer). O(n),
+	 * the rows after it move down by one; a reversed order becomes a forward one.
+	 */
+	@Override
+	public MediaItems remove(int position) {
+		MediaItems item = get(position);
+		int removedRow = row(position);
+
+		int[] newOrder = null;
+		if (order != null) {
+			newOrder = new int[rowCount - 1];
+			int i = 0;
+			for (int p = 0; p < rowCount; p++) {
+				if (p == position)
+					continue;
+				int row = row(p);
+				newOrder[i++] = row > removedRow ? row - 1 : row;
+			}
+		}
+
+		int from = removedRow + 1;
+		int tail = rowCount - from;
+		System.arraycopy(ids, from, ids, removedRow, tail);
+		System.arraycopy(dates, from, dates, removedRow, tail);
+		System.arraycopy(sizes, from, sizes, removedRow, tail);
+		System.arraycopy(durations, from, durations, removedRow, tail);
+		System.arraycopy(widths, from, widths, removedRow, tail);
+		System.arraycopy(heights, from, heights, removedRow, tail);
+		System.arraycopy(types, from, types, removedRow, tail);
+		System.arraycopy(volumes, from, volumes, removedRow, tail);
+		System.arraycopy(names, from, names, removedRow, tail);
+		// the key chars stay where they are, only their bounds move
+		System.arraycopy(keyStarts, from, keyStarts, removedRow, tail);
+		System.arraycopy(keyEnds, from, keyEnds, removedRow, tail);
+		rowCount--;
+		names[rowCount] = null;
+
+		order = newOrder;
+		reversed = false;
+		version++;
+		modCount++;
+		return item;
+	}
+
+	@Override
+	public int size() {
+		return rowCount;
+	}
+
+	/**
+	 * Materialize the item at a list position (e.g. for binding a view).
+	 */
+	@Override
+	public MediaItems get(int position) {
+		int row = row(position);
+		MediaItems.MediaType type = TYPES[types[row]];
+		MediaItems item;
+		if (type == MediaItems.MediaType.VIDEO) {
+			item = new MediaItems(String.valueOf(ids[row]), names[row], dates[row], sizes[row], uriAt(row),
+					widths[row], heights[row], durations[row]);
+		} else {
+			item = new MediaItems(String.valueOf(ids[row]), names[row], dates[row], sizes[row], uriAt(row),
+					widths[row], heights[row], type);
+		}
+		item.volumeName = volumeNames.get(volumes[row]);
+		item.isOnSdCard = !"external_primary".equals(item.volumeName);
+		return item;
+	}
+
+	/**
+	 * Row number behind a list position.
+	 */
+	public int row(int position) {
+		if (position < 0 || position >= rowCount) {
+			throw new IndexOutOfBoundsException("position " + position + ", size " + rowCount);
+		}
+		if (order == null)
+			return position;
+		return reversed ? order[rowCount - 1 - position] : order[position];
+	}
+
+	/**
+	 * Changes whenever rows are added or removed, so cached orders can tell
+	 * they're out of date.
+	 */
+	public int version() {
+		return version;
+	}
+
+	// Column access by row number
+
+	public long idAt(int row) {
+		return ids[row];
+	}
+
+	public String nameAt(int row) {
+		return names[row];
+	}
+
+	public long dateAt(int row) {
+		return dates[row];
+	}
+
+	public long sizeAt(int row) {
+		return sizes[row];
+	}
+
+	public MediaItems.MediaType typeAt(int row) {
+		return TYPES[types[row]];
+	}
+
+	public Uri uriAt(int row) {
+		Uri base = types[row] == MediaItems.MediaType.VIDEO.ordinal() ? MediaStore.Video.Media.EXTERNAL_CONTENT_URI
+				: MediaStore.Images.Media.EXTERNAL_CONTENT_URI;
+		return ContentUris.withAppendedId(base, ids[row]);
+	}
+
+	/**
+	 * Natural ("file2" before "file10") name order of two rows, case-insensitive.
+	 * Works on the precomputed keys and allocates nothing; orders exactly like the
+	 * substring/BigInteger comparator it replaces: digit runs compare by value
+	 * (leading zeros ignored, more zeros first on a tie), anything else by
+	 * lower-cased char, then the shorter name first. A null name sorts first.
+	 */
+	public int compareNames(int rowA, int rowB) {
+		int start1 = keyStarts[rowA];
+		int start2 = keyStarts[rowB];
+		if (start1 < 0)
+			return -1;
+		if (start2 < 0)
+			return 1;
+
+		char[] k = keyChars;
+		int end1 = keyEnds[rowA];
+		int end2 = keyEnds[rowB];
+		int i = start1, j = start2;
+
+		while (i < end1 && j < end2) {
+			char c1 = k[i];
+			char c2 = k[j];
+
+			if (Character.isDigit(c1) && Character.isDigit(c2)) {
+				while (i < end1 && k[i] == '0')
+					i++;
+				while (j < end2 && k[j] == '0')
+					j++;
+
+				int numStart1 = i;
+				int numStart2 = j;
+				while (i < end1 && Character.isDigit(k[i]))
+					i++;
+				while (j < end2 && Character.isDigit(k[j]))
+					j++;
+
+				int cmp = compareDigitRuns(k, numStart1, i, numStart2, j);
+				if (cmp != 0)
+					return cmp;
+
+				int numLength1 = i - numStart1;
+				int numLength2 = j - numStart2;
+				if (numLength1 != numLength2) {
+					return Integer.compare(numLength2, numLength1);
+				}
+			} else {
+				int cmp = c1 - c2;
+				if (cmp != 0)
+					return cmp;
+				i++;
+				j++;
+			}
+		}
+
+		return Integer.compare(end1 - start1, end2 - start2);
+	}
+
+	// Numeric value of two digit runs, any length, any Unicode digits (like BigInteger)
+	private static int compareDigitRuns(char[] k, int from1, int to1, int from2, int to2) {
+		while (from1 < to1 && Character.digit(k[from1], 10) == 0)
+			from1++;
+		while (from2 < to2 && Character.digit(k[from2], 10) == 0)
+			from2++;
+
+		int digits1 = to1 - from1;
+		int digits2 = to2 - from2;
+		if (digits1 != digits2)
+			return digits1 < digits2 ? -1 : 1;
+
+		for (int n = 0; n < digits1; n++) {
+			int d1 = Character.digit(k[from1 + n], 10);
+			int d2 = Character.digit(k[from2 + n], 10);
+			if (d1 != d2)
+				return d1 < d2 ? -1 : 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * All rows sorted by the given comparator (stable, like List.sort), as a
+	 * permutation for setOrder(). Doesn't change the list itself.
+	 */
+	public int[] sortedOrder(RowComparator comparator) {
+		int count = rowCount;
+		int[] sorted = new int[count];
+		for (int i = 0; i < count; i++) {
+			sorted[i] = i;
+		}
+		mergeSort(sorted, new int[count], 0, count, comparator);
+		return sorted;
+	}
+
+	/**
+	 * Show the rows in the given order, optionally backwards. O(1): the
+	 * permutation is used as is, not copied.
+	 */
+	public void setOrder(int[] order, boolean reversed) {
+		if (order.length != rowCount) {
+			throw new IllegalArgumentException("order has " + order.length + " rows, table has " + rowCount);
+		}
+		this.order = order;
+		this.reversed = reversed;
+	}
+
+	/**
+	 * List position of the item with this content Uri, or -1.
+	 */
+	public int indexOfUri(Uri uri) {
+		if (uri == null)
+			return -1;
+		long id;
+		try {
+			id = ContentUris.parseId(uri);
+		} catch (RuntimeException e) {
+			return -1;
+		}
+		for (int position = 0; position < rowCount; position++) {
+			int row = row(position);
+			if (ids[row] == id && uri.equals(uriAt(row))) {
+				return position;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Mark rows as ANIMATED_IMAGE (background WebP check). Returns the list
+	 * positions that changed.
+	 */
+	public List<Integer> upgradeAnimated(Set<String> animatedIds) {
+		Set<Long> ids = new HashSet<>();
+		for (String id : animatedIds) {
+			try {
+				ids.add(Long.parseLong(id));
+			} catch (NumberFormatException ignored) {
+			}
+		}
+
+		List<Integer> changed = new ArrayList<>();
+		byte image = (byte) MediaItems.MediaType.IMAGE.ordinal();
+		for (int position = 0; position < rowCount; position++) {
+			int row = row(position);
+			if (types[row] == image && ids.contains(this.ids[row])) {
+				types[row] = (byte) MediaItems.MediaType.ANIMATED_IMAGE.ordinal();
+				changed.add(position);
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Write the first count items (in list order) column by column, for
+	 * readFrom(). Volume names are written once, rows only carry their index.
+	 */
+	public void writeTo(DataOutputStream out, int count) throws IOException {
+		count = Math.min(count, rowCount);
+		int[] rows = new int[count];
+		for (int position = 0; position < count; position++) {
+			rows[position] = row(position);
+		}
+
+		out.writeInt(count);
+		out.writeByte(volumeNames.size());
+		for (String volumeName : volumeNames) {
+			writeNullableString(out, volumeName);
+		}
+		for (int row : rows)
+			out.writeLong(ids[row]);
+		for (int row : rows)
+			out.writeLong(dates[row]);
+		for (int row : rows)
+			out.writeLong(sizes[row]);
+		for (int row : rows)
+			out.writeLong(durations[row]);
+		for (int row : rows)
+			out.writeInt(widths[row]);
+		for (int row : rows)
+			out.writeInt(heights[row]);
+		for (int row : rows)
+			out.writeByte(types[row]);
+		for (int row : rows)
+			out.writeByte(volumes[row]);
+		for (int row : rows)
+			writeNullableString(out, names[row]);
+	}
+
+	/**
+	 * Read a table written by writeTo(). Rows come back in load order.
+	 */
+	public static MediaTable readFrom(DataInputStream in) throws IOException {
+		int count = in.readInt();
+		if (count < 0) {
+			throw new IOException("Bad row count " + count);
+		}
+		MediaTable table = new MediaTable(count);
+		int volumeCount = in.readUnsignedByte();
+		for (int i = 0; i < volumeCount; i++) {
+			table.volumeNames.add(readNullableString(in));
+		}
+		for (int row = 0; row < count; row++)
+			table.ids[row] = in.readLong();
+		for (int row = 0; row < count; row++)
+			table.dates[row] = in.readLong();
+		for (int row = 0; row < count; row++)
+			table.sizes[row] = in.readLong();
+		for (int row = 0; row < count; row++)
+			table.durations[row] = in.readLong();
+		for (int row = 0; row < count; row++)
+			table.widths[row] = in.readInt();
+		for (int row = 0; row < count; row++)
+			table.heights[row] = in.readInt();
+		for (int row = 0; row < count; row++) {
+			byte type = in.readByte();
+			if (type < 0 || type >= TYPES.length) {
+				throw new IOException("Bad media type " + type);
+			}
+			table.types[row] = type;
+		}
+		for (int row = 0; row < count; row++) {
+			byte volume = in.readByte();
+			if (volume < 0 || volume >= volumeCount) {
+				throw new IOException("Bad volume " + volume);
+			}
+			table.volumes[row] = volume;
+		}
+		for (int row = 0; row < count; row++) {
+			String name = readNullableString(in);
+			table.names[row] = name;
+			table.keyStarts[row] = table.appendKey(name);
+			table.keyEnds[row] = table.keyLength;
+		}
+		table.rowCount = count;
+		table.version++;
+		return table;
+	}
+
+	static void writeNullableString(DataOutputStream out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	static String readNullableString(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	private int volumeIndex(String volumeName) {
+		int index = volumeNames.indexOf(volumeName);
+		if (index < 0) {
+			volumeNames.add(volumeName);
+			index = volumeNames.size() - 1;
+		}
+		return index;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= ids.length)
+			return;
+		int newCapacity = Math.max(capacity, ids.length * 2);
+		ids = Arrays.copyOf(ids, newCapacity);
+		dates = Arrays.copyOf(dates, newCapacity);
+		sizes = Arrays.copyOf(sizes, newCapacity);
+		durations = Arrays.copyOf(durations, newCapacity);
+		widths = Arrays.copyOf(widths, newCapacity);
+		heights = Arrays.copyOf(heights, newCapacity);
+		types = Arrays.copyOf(types, newCapacity);
+		volumes = Arrays.copyOf(volumes, newCapacity);
+		names = Arrays.copyOf(names, newCapacity);
+		keyStarts = Arrays.copyOf(keyStarts, newCapacity);
+		keyEnds = Arrays.copyOf(keyEnds, newCapacity);
+	}
+
+	// Stable merge sort of row numbers, insertion sort for short runs
+	private static void mergeSort(int[] a, int[] tmp, int from, int to, RowComparator comparator) {
+		if (to - from <= 16) {
+			for (int i = from + 1; i < to; i++) {
+				int value = a[i];
+				int j = i - 1;
+				while (j >= from && comparator.compare(a[j], value) > 0) {
+					a[j + 1] = a[j];
+					j--;
+				}
+				a[j + 1] = value;
+			}
+			return;
+		}
+
+		int mid = (from + to) >>> 1;
+		mergeSort(a, tmp, from, mid, comparator);
+		mergeSort(a, tmp, mid, to, comparator);
+		if (comparator.compare(a[mid - 1], a[mid]) <= 0)
+			return; // already in order
+
+		System.arraycopy(a, from, tmp, from, to - from);
+		int i = from, j = mid, k = from;
+		while (i < mid && j < to) {
+			a[k++] = comparator.compare(tmp[j], tmp[i]) < 0 ? tmp[j++] : tmp[i++];
+		}
+		while (i < mid) {
+			a[k++] = tmp[i++];
+		}
+		while (j < to) {
+			a[k++] = tmp[j++];
+		}
+	}
+}
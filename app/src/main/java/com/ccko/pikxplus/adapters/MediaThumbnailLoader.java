@@ -0,0 +1,192 @@
+package com.ccko.pikxplus.adapters;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.provider.MediaStore;
+import android.util.Size;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.Option;
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.ModelLoaderFactory;
+import com.bumptech.glide.load.model.MultiModelLoaderFactory;
+import com.bumptech.glide.request.target.Target;
+import com.bumptech.glide.signature.ObjectKey;
+
+import java.io.IOException;
+
+/**
+ * Glide loader for grid-sized MediaStore thumbnails.
+ *
+ * Loading a content Uri makes Glide open the original and decode it (downsampled)
+ * for every 240px tile. For requests with PLATFORM_THUMBNAIL set and a small
+ * target size this asks ContentResolver.loadThumbnail() instead, which the media
+ * provider keeps cached, so a cold scroll mostly reads small cached files (videos
+ * included, no frame extraction). If the platform has no thumbnail the load fails
+ * over to Glide's own Uri loaders, i.e. the full decode.
+ *
+ * Square requests that also set DATE_MODIFIED, up to ThumbnailStore.TILE_SIZE,
+ * go through the packed ThumbnailStore first: a hit is a small JPEG read out of
+ * a memory mapping, and every platform thumbnail loaded for such a request is
+ * stored. The larger tiers always load the platform thumbnail.
+ *
+ * There's no annotation processor / AppGlideModule in this app, so register()
+ * prepends it to the registry at runtime.
+ */
+public final class MediaThumbnailLoader implements ModelLoader<Uri, Bitmap> {
+
+	/** Set on a request to let it use the platform thumbnail. */
+	public static final Option<Boolean> PLATFORM_THUMBNAIL = Option
+			.memory("com.ccko.pikxplus.adapters.MediaThumbnailLoader.PlatformThumbnail", false);
+
+	/** The item's DATE_MODIFIED, lets the request use the ThumbnailStore. */
+	public static final Option<Long> DATE_MODIFIED = Option
+			.memory("com.ccko.pikxplus.adapters.MediaThumbnailLoader.DateModified", -1L);
+
+	/** Bigger requests decode the original, platform thumbnails are not much larger than this. */
+	private static final int MAX_SIZE = 512;
+
+	private static boolean registered; // guarded by MediaThumbnailLoader.class
+
+	private final ContentResolver resolver;
+	private final ThumbnailStore store;
+
+	private MediaThumbnailLoader(ContentResolver resolver, ThumbnailStore store) {
+		this.resolver = resolver;
+		this.store = store;
+	}
+
+	/**
+	 * Add the loader to Glide's registry, once per process.
+	 */
+	public static synchronized void register(Context context) {
+		if (registered)
+			return;
+		registered = true;
+		Context appContext = context.getApplicationContext();
+		Glide.get(appContext).getRegistry().prepend(Uri.class, Bitmap.class, new Factory(appContext));
+	}
+
+	@Override
+	public boolean handles(@NonNull Uri uri) {
+		return ContentResolver.SCHEME_CONTENT.equals(uri.getScheme())
+				&& MediaStore.AUTHORITY.equals(uri.getAuthority());
+	}
+
+	@Nullable
+	@Override
+	public LoadData<Bitmap> buildLoadData(@NonNull Uri uri, int width, int height, @NonNull Options options) {
+		if (!Boolean.TRUE.equals(options.get(PLATFORM_THUMBNAIL)))
+			return null;
+		if (width == Target.SIZE_ORIGINAL || height == Target.SIZE_ORIGINAL || width <= 0 || height <= 0
+				|| width > MAX_SIZE || height > MAX_SIZE)
+			return null; // not grid-sized, leave it to the full decode
+
+		long dateModified = options.get(DATE_MODIFIED);
+		long id = -1;
+		if (dateModified >= 0 && width == height && width <= ThumbnailStore.TILE_SIZE) {
+			try {
+				id = ContentUris.parseId(uri);
+			} catch (RuntimeException ignored) {
+			}
+		}
+		ThumbnailStore packed = id >= 0 ? store : null;
+		// Keyed on the date too when known, so an edited file doesn't come back from a cache
+		Object key = dateModified >= 0 ? uri + "@" + dateModified : uri;
+		return new LoadData<>(new ObjectKey(key),
+				new ThumbnailFetcher(resolver, uri, new Size(width, height), packed, id, dateModified));
+	}
+
+	private static final class ThumbnailFetcher implements DataFetcher<Bitmap> {
+		private final ContentResolver resolver;
+		private final Uri uri;
+		private final Size size;
+		private final ThumbnailStore store; // null: don't use the store
+		private final long id;
+		private final long dateModified;
+		private final CancellationSignal cancellation = new CancellationSignal();
+
+		ThumbnailFetcher(ContentResolver resolver, Uri uri, Size size, ThumbnailStore store, long id,
+				long dateModified) {
+			this.resolver = resolver;
+			this.uri = uri;
+			this.size = size;
+			this.store = store;
+			this.id = id;
+			this.dateModified = dateModified;
+		}
+
+		@Override
+		public void loadData(@NonNull Priority priority, @NonNull DataCallback<? super Bitmap> callback) {
+			try {
+				if (store == null) {
+					callback.onDataReady(resolver.loadThumbnail(uri, size, cancellation));
+					return;
+				}
+				Bitmap tile = store.get(id, dateModified);
+				if (tile == null) {
+					// Tile-sized, so the stored tile serves every smaller request too
+					Size tileSize = new Size(ThumbnailStore.TILE_SIZE, ThumbnailStore.TILE_SIZE);
+					Bitmap thumbnail = resolver.loadThumbnail(uri, tileSize, cancellation);
+					store.put(id, dateModified, thumbnail);
+					tile = thumbnail;
+				}
+				callback.onDataReady(tile);
+			} catch (IOException | RuntimeException e) {
+				// Glide moves on to the next loader for the Uri
+				callback.onLoadFailed(e);
+			}
+		}
+
+		@Override
+		public void cleanup() {
+			// the Bitmap is handed over to Glide, nothing held here
+		}
+
+		@Override
+		public void cancel() {
+			cancellation.cancel();
+		}
+
+		@NonNull
+		@Override
+		public Class<Bitmap> getDataClass() {
+			return Bitmap.class;
+		}
+
+		@NonNull
+		@Override
+		public DataSource getDataSource() {
+			return DataSource.LOCAL;
+		}
+	}
+
+	private static final class Factory implements ModelLoaderFactory<Uri, Bitmap> {
+		private final Context appContext;
+
+		Factory(Context appContext) {
+			this.appContext = appContext;
+		}
+
+		@NonNull
+		@Override
+		public ModelLoader<Uri, Bitmap> build(@NonNull MultiModelLoaderFactory multiFactory) {
+			return new MediaThumbnailLoader(appContext.getContentResolver(), ThumbnailStore.getInstance(appContext));
+		}
+
+		@Override
+		public void teardown() {
+		}
+	}
+}
@@ -0,0 +1,401 @@
+package com.ccko.pikxplus.adapters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * In-memory file name search over the rows of a MediaTable.
+ *
+ * Names are split into words at anything that isn't a letter or digit and at
+ * letter/digit boundaries ("IMG_20230101.jpg" -> img, 20230101, jpg). The
+ * distinct words are kept sorted with a posting list of rows each, so a query
+ * word is a binary search plus a scan over the words it prefixes. Media types
+ * are one bitset each. A query is a list of terms matched with OR (the search
+ * presets are lists like "jpg jpeg png webp"); a term matches a row when every
+ * word of it starts a word of the name ("img_2023" needs img* and 2023*). The
+ * type filter is an OR of the selected types. Everything is built once per
+ * album in the background; a filter change then only ORs/ANDs bitsets.
+ *
+ * Typing one more character only ever removes rows, so narrow() re-checks just
+ * the rows of the previous result against each row's own words instead of
+ * starting over from all rows.
+ */
+public final class SearchIndex {
+
+	/** Filter.types values. */
+	public static final String TYPE_IMAGES = "images";
+	public static final String TYPE_VIDEOS = "videos";
+	public static final String TYPE_GIFS = "gifs";
+
+	private final int rowCount;
+	private final String[] words; // sorted
+	private final int[] postingStarts; // words[i] -> postings[postingStarts[i] .. postingStarts[i + 1])
+	private final int[] postings; // row numbers
+	private final int[] rowWordStarts; // row -> rowWords[rowWordStarts[row] .. rowWordStarts[row + 1])
+	private final int[] rowWords; // indexes into words
+	private final long[] images;
+	private final long[] videos;
+	private final long[] gifs;
+
+	private SearchIndex(int rowCount, String[] words, int[] postingStarts, int[] postings, long[] images,
+			long[] videos, long[] gifs) {
+		this.rowCount = rowCount;
+		this.words = words;
+		this.postingStarts = postingStarts;
+		this.postings = postings;
+
+		// The same pairs the other way round, for narrow()
+		rowWordStarts = new int[rowCount + 1];
+		for (int row : postings) {
+			rowWordStarts[row + 1]++;
+		}
+		for (int row = 0; row < rowCount; row++) {
+			rowWordStarts[row + 1] += rowWordStarts[row];
+		}
+		rowWords = new int[postings.length];
+		int[] next = Arrays.copyOf(rowWordStarts, rowCount);
+		for (int i = 0; i < words.length; i++) {
+			for (int p = postingStarts[i]; p < postingStarts[i + 1]; p++) {
+				rowWords[next[postings[p]]++] = i;
+			}
+		}
+		this.images = images;
+		this.videos = videos;
+		this.gifs = gifs;
+	}
+
+	/**
+	 * Index every row of the table (row numbers, not list positions).
+	 */
+	public static SearchIndex build(MediaTable table) {
+		int rowCount = table.size();
+		long[] images = newBitSet(rowCount);
+		long[] videos = newBitSet(rowCount);
+		long[] gifs = newBitSet(rowCount);
+
+		Map<String, IntList> postingsByWord = new HashMap<>();
+		List<String> rowWords = new ArrayList<>();
+		int postingCount = 0;
+		for (int row = 0; row < rowCount; row++) {
+			switch (table.typeAt(row)) {
+				case VIDEO:
+					set(videos, row);
+					break;
+				case ANIMATED_IMAGE:
+					set(gifs, row);
+					break;
+				default:
+					set(images, row);
+					break;
+			}
+
+			rowWords.clear();
+			splitWords(table.nameAt(row), rowWords);
+			for (String word : rowWords) {
+				IntList rows = postingsByWord.get(word);
+				if (rows == null) {
+					rows = new IntList();
+					postingsByWord.put(word, rows);
+				}
+				// Rows come in ascending order, a repeated word only needs the last one checked
+				if (rows.size == 0 || rows.values[rows.size - 1] != row) {
+					rows.add(row);
+					postingCount++;
+				}
+			}
+		}
+
+		String[] words = postingsByWord.keySet().toArray(new String[0]);
+		Arrays.sort(words);
+		int[] postingStarts = new int[words.length + 1];
+		int[] postings = new int[postingCount];
+		int next = 0;
+		for (int i = 0; i < words.length; i++) {
+			postingStarts[i] = next;
+			IntList rows = postingsByWord.get(words[i]);
+			System.arraycopy(rows.values, 0, postings, next, rows.size);
+			next += rows.size;
+		}
+		postingStarts[words.length] = next;
+
+		return new SearchIndex(rowCount, words, postingStarts, postings, images, videos, gifs);
+	}
+
+	public int rowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Rows matching the query and the types, as a bitset over row numbers.
+	 * An empty query or type set doesn't restrict anything. Null if the thread
+	 * was interrupted meanwhile.
+	 */
+	public long[] match(String query, Set<String> types) {
+		long[] result = matchTypes(types);
+		if (query == null || query.trim().isEmpty())
+			return result;
+
+		long[] named = newBitSet(rowCount);
+		List<String> termWords = new ArrayList<>();
+		boolean anyTerm = false;
+		for (String term : terms(query)) {
+			if (Thread.currentThread().isInterrupted())
+				return null;
+			termWords.clear();
+			splitWords(term, termWords);
+			if (termWords.isEmpty())
+				continue; // only punctuation
+			anyTerm = true;
+			// All words of one term ("img_2023"), any of the terms
+			long[] termRows = newBitSet(rowCount);
+			orPrefix(termWords.get(0), termRows);
+			for (int i = 1; i < termWords.size(); i++) {
+				long[] wordRows = newBitSet(rowCount);
+				orPrefix(termWords.get(i), wordRows);
+				and(termRows, wordRows);
+			}
+			or(named, termRows);
+		}
+		if (anyTerm) {
+			and(result, named);
+		}
+		return result;
+	}
+
+	/**
+	 * Whether every row matching (query, types) also matched (previousQuery,
+	 * previousTypes), so narrow() can start from the previous result. True when
+	 * the types are the same and each term extends the previous term at the same
+	 * place ("im" -> "img", "img" -> "img_20"); adding a term is not a narrowing,
+	 * terms are OR-ed.
+	 */
+	public static boolean narrows(String previousQuery, Set<String> previousTypes, String query,
+			Set<String> types) {
+		if (previousQuery == null || query == null || !Objects.equals(previousTypes, types))
+			return false;
+		String[] previousTerms = terms(previousQuery);
+		String[] newTerms = terms(query);
+		List<String> termWords = new ArrayList<>();
+		boolean previousAnyTerm = false;
+		for (String term : previousTerms) {
+			termWords.clear();
+			splitWords(term, termWords);
+			previousAnyTerm |= !termWords.isEmpty();
+		}
+		if (!previousAnyTerm)
+			return true; // the previous result was the whole type filter
+		if (previousTerms.length != newTerms.length)
+			return false;
+		for (int i = 0; i < newTerms.length; i++) {
+			termWords.clear();
+			splitWords(previousTerms[i], termWords);
+			// A punctuation-only term matched nothing, extended it could match anything
+			if (termWords.isEmpty() || !newTerms[i].startsWith(previousTerms[i]))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Like match(), but only looks at the rows set in previous, the result of an
+	 * earlier query that narrows() to this one. Costs time in the size of the
+	 * previous result rather than the album. Null if the thread was interrupted.
+	 */
+	public long[] narrow(long[] previous, String query, Set<String> types) {
+		long[] result = previous.clone();
+		List<List<String>> termWords = new ArrayList<>();
+		for (String term : terms(query)) {
+			List<String> words = new ArrayList<>();
+			splitWords(term, words);
+			if (!words.isEmpty()) {
+				termWords.add(words);
+			}
+		}
+		if (termWords.isEmpty())
+			return result;
+
+		int checked = 0;
+		for (int row = nextSetBit(previous, 0); row >= 0; row = nextSetBit(previous, row + 1)) {
+			if ((++checked & 1023) == 0 && Thread.currentThread().isInterrupted())
+				return null;
+			boolean any = false;
+			for (int t = 0; t < termWords.size() && !any; t++) {
+				any = rowMatches(row, termWords.get(t));
+			}
+			if (!any) {
+				clear(result, row);
+			}
+		}
+		return result;
+	}
+
+	// Every word of the term starts one of the row's words
+	private boolean rowMatches(int row, List<String> termWords) {
+		for (String prefix : termWords) {
+			boolean found = false;
+			for (int p = rowWordStarts[row]; p < rowWordStarts[row + 1] && !found; p++) {
+				found = words[rowWords[p]].startsWith(prefix);
+			}
+			if (!found)
+				return false;
+		}
+		return true;
+	}
+
+	private static String[] terms(String query) {
+		String trimmed = query.trim();
+		return trimmed.isEmpty() ? new String[0] : trimmed.split("\\s+");
+	}
+
+	private long[] matchTypes(Set<String> types) {
+		long[] result = newBitSet(rowCount);
+		if (types == null || types.isEmpty()) {
+			setAll(result, rowCount);
+			return result;
+		}
+		if (types.contains(TYPE_IMAGES))
+			or(result, images);
+		if (types.contains(TYPE_VIDEOS))
+			or(result, videos);
+		if (types.contains(TYPE_GIFS))
+			or(result, gifs);
+		return result;
+	}
+
+	// Every word starting with prefix is a contiguous run of the sorted words
+	private void orPrefix(String prefix, long[] into) {
+		int i = Arrays.binarySearch(words, prefix);
+		if (i < 0)
+			i = -i - 1;
+		for (; i < words.length && words[i].startsWith(prefix); i++) {
+			for (int p = postingStarts[i]; p < postingStarts[i + 1]; p++) {
+				set(into, postings[p]);
+			}
+		}
+	}
+
+	/**
+	 * Move a row to another type bucket (e.g. a WebP found to be animated).
+	 */
+	public void updateType(int row, MediaItems.MediaType type) {
+		clear(images, row);
+		clear(videos, row);
+		clear(gifs, row);
+		switch (type) {
+			case VIDEO:
+				set(videos, row);
+				break;
+			case ANIMATED_IMAGE:
+				set(gifs, row);
+				break;
+			default:
+				set(images, row);
+				break;
+		}
+	}
+
+	/**
+	 * Lower-cased words of a name (or query), split at non letters/digits and at
+	 * letter/digit boundaries.
+	 */
+	static void splitWords(String text, List<String> into) {
+		if (text == null)
+			return;
+		String lower = text.toLowerCase(Locale.ROOT);
+		int length = lower.length();
+		int start = -1;
+		boolean startDigit = false;
+		for (int i = 0; i <= length; i++) {
+			char c = i < length ? lower.charAt(i) : ' ';
+			boolean letterOrDigit = Character.isLetterOrDigit(c);
+			boolean digit = Character.isDigit(c);
+			if (start >= 0 && (!letterOrDigit || digit != startDigit)) {
+				into.add(lower.substring(start, i));
+				start = -1;
+			}
+			if (start < 0 && letterOrDigit) {
+				start = i;
+				startDigit = digit;
+			}
+		}
+	}
+
+	// Bitsets over row numbers
+
+	public static long[] newBitSet(int bits) {
+		return new long[(bits + 63) >>> 6];
+	}
+
+	public static boolean get(long[] bits, int index) {
+		return (bits[index >>> 6] & (1L << index)) != 0;
+	}
+
+	/** Index of the first set bit at or after from, or -1. */
+	public static int nextSetBit(long[] bits, int from) {
+		int i = from >>> 6;
+		if (i >= bits.length)
+			return -1;
+		long word = bits[i] & (-1L << from);
+		while (true) {
+			if (word != 0)
+				return (i << 6) + Long.numberOfTrailingZeros(word);
+			if (++i == bits.length)
+				return -1;
+			word = bits[i];
+		}
+	}
+
+	public static int cardinality(long[] bits) {
+		int count = 0;
+		for (long word : bits) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	private static void set(long[] bits, int index) {
+		bits[index >>> 6] |= 1L << index;
+	}
+
+	private static void clear(long[] bits, int index) {
+		bits[index >>> 6] &= ~(1L << index);
+	}
+
+	private static void setAll(long[] bits, int count) {
+		Arrays.fill(bits, -1L);
+		if ((count & 63) != 0) {
+			bits[bits.length - 1] = (1L << count) - 1;
+		}
+	}
+
+	private static void or(long[] into, long[] other) {
+		for (int i = 0; i < into.length; i++) {
+			into[i] |= other[i];
+		}
+	}
+
+	private static void and(long[] into, long[] other) {
+		for (int i = 0; i < into.length; i++) {
+			into[i] &= other[i];
+		}
+	}
+
+	// Growable int[] without boxing
+	private static final class IntList {
+		int[] values = new int[2];
+		int size;
+
+		void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+	}
+}
@@ -0,0 +1,237 @@
+package com.ccko.pikxplus.adapters;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import com.ccko.pikxplus.utils.TaskScheduler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * What the app showed last time, so a cold start can draw it in the first frame.
+ *
+ * Two small binary files in the app's files dir: the album list, and the first
+ * pages of the album that was open (the one in the last_album_id prefs). They're
+ * read once per process, preferably ahead of time via preload() from
+ * MainActivity.onCreate, and rewritten in the background whenever fresh data
+ * has been loaded. Screens show the snapshot right away and replace it as soon
+ * as the real MediaStore / MediaIndex load finishes.
+ */
+public class SnapshotStore {
+
+	private static final String TAG = "SnapshotStore";
+	private static final int MAGIC = 0x50584e50; // "PXNP"
+	private static final int FORMAT_VERSION = 1;
+
+	/** How many items of the open album are kept, a few screens' worth. */
+	public static final int ALBUM_PAGE_ROWS = 600;
+
+	private static volatile SnapshotStore instance;
+
+	private final AtomicFile albumsFile;
+	private final AtomicFile albumPageFile;
+
+	// guarded by this
+	private boolean loaded;
+	private List<AlbumInfo> albums;
+	private String pageKey;
+	private MediaTable page;
+
+	public static SnapshotStore getInstance(Context context) {
+		if (instance == null) {
+			synchronized (SnapshotStore.class) {
+				if (instance == null) {
+					instance = new SnapshotStore(context.getApplicationContext());
+				}
+			}
+		}
+		return instance;
+	}
+
+	private SnapshotStore(Context appContext) {
+		File dir = new File(appContext.getFilesDir(), "snapshot");
+		albumsFile = new AtomicFile(new File(dir, "albums.bin"));
+		albumPageFile = new AtomicFile(new File(dir, "album_page.bin"));
+	}
+
+	/**
+	 * Start reading the snapshot off the main thread; the getters then usually
+	 * find it already in memory.
+	 */
+	public void preload() {
+		TaskScheduler.get().submit(TaskScheduler.Lane.UI_CRITICAL, null, this::ensureLoaded);
+	}
+
+	/**
+	 * Albums from the last run, or null if there's no snapshot.
+	 */
+	public List<AlbumInfo> getAlbums() {
+		synchronized (this) {
+			ensureLoaded();
+			return albums == null ? null : new ArrayList<>(albums);
+		}
+	}
+
+	/**
+	 * First items of an album as last shown in the given sort mode, or null if
+	 * the snapshot is of another album / sort.
+	 */
+	public MediaTable getAlbumPage(String albumId, String albumName, String folderName, String sortMode) {
+		String key = pageKey(albumId, albumName, folderName, sortMode);
+		synchronized (this) {
+			ensureLoaded();
+			if (page == null || !key.equals(pageKey))
+				return null;
+			MediaTable copy = new MediaTable(page.size());
+			copy.addRows(page, 0, page.size());
+			return copy;
+		}
+	}
+
+	/**
+	 * Replace the album snapshot. Does file I/O, call it off the main thread.
+	 */
+	public void saveAlbums(List<AlbumInfo> albumList) {
+		List<AlbumInfo> copy = new ArrayList<>(albumList);
+		synchronized (this) {
+			ensureLoaded();
+			albums = copy;
+		}
+
+		write(albumsFile, out -> {
+			out.writeInt(copy.size());
+			for (AlbumInfo album : copy) {
+				MediaTable.writeNullableString(out, album.id);
+				MediaTable.writeNullableString(out, album.name);
+				out.writeInt(album.photoCount);
+				out.writeInt(album.videoCount);
+				MediaTable.writeNullableString(out,
+						album.thumbnailUri == null ? null : album.thumbnailUri.toString());
+				MediaTable.writeNullableString(out, album.relativePath);
+				MediaTable.writeNullableString(out, album.volumeName);
+			}
+		});
+	}
+
+	/**
+	 * Replace the open-album snapshot with the first ALBUM_PAGE_ROWS items of
+	 * items (list order). Does file I/O, call it off the main thread.
+	 */
+	public void saveAlbumPage(String albumId, String albumName, String folderName, String sortMode,
+			MediaTable items) {
+		String key = pageKey(albumId, albumName, folderName, sortMode);
+		MediaTable copy = new MediaTable(Math.min(items.size(), ALBUM_PAGE_ROWS));
+		copy.addRows(items, 0, Math.min(items.size(), ALBUM_PAGE_ROWS));
+		synchronized (this) {
+			ensureLoaded();
+			pageKey = key;
+			page = copy;
+		}
+
+		write(albumPageFile, out -> {
+			out.writeUTF(key);
+			copy.writeTo(out, copy.size());
+		});
+	}
+
+	private synchronized void ensureLoaded() {
+		if (loaded)
+			return;
+		loaded = true;
+
+		try (DataInputStream in = openRead(albumsFile)) {
+			if (in != null) {
+				int count = in.readInt();
+				List<AlbumInfo> list = new ArrayList<>(Math.max(0, count));
+				for (int i = 0; i < count; i++) {
+					String id = MediaTable.readNullableString(in);
+					String name = MediaTable.readNullableString(in);
+					int photoCount = in.readInt();
+					int videoCount = in.readInt();
+					String thumbnail = MediaTable.readNullableString(in);
+					String relativePath = MediaTable.readNullableString(in);
+					String volumeName = MediaTable.readNullableString(in);
+					list.add(new AlbumInfo(id, name, photoCount, videoCount,
+							thumbnail == null ? null : Uri.parse(thumbnail), relativePath, volumeName));
+				}
+				albums = list;
+			}
+		} catch (IOException | RuntimeException e) {
+			Log.w(TAG, "Dropping unreadable album snapshot", e);
+			albumsFile.delete();
+		}
+
+		try (DataInputStream in = openRead(albumPageFile)) {
+			if (in != null) {
+				String key = in.readUTF();
+				page = MediaTable.readFrom(in);
+				pageKey = key;
+			}
+		} catch (IOException | RuntimeException e) {
+			Log.w(TAG, "Dropping unreadable album page snapshot", e);
+			page = null;
+			albumPageFile.delete();
+		}
+	}
+
+	// null if there's no snapshot (or it was written by another format version)
+	private static DataInputStream openRead(AtomicFile file) throws IOException {
+		FileInputStream stream;
+		try {
+			stream = file.openRead();
+		} catch (FileNotFoundException e) {
+			return null;
+		}
+		DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+		if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+			in.close();
+			return null;
+		}
+		return in;
+	}
+
+	private interface Writer {
+		void write(DataOutputStream out) throws IOException;
+	}
+
+	// Whole file or nothing: a crash mid-write leaves the previous snapshot in place
+	private static synchronized void write(AtomicFile file, Writer writer) {
+		FileOutputStream stream = null;
+		try {
+			File parent = file.getBaseFile().getParentFile();
+			if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+				throw new IOException("Can't create " + parent);
+			}
+			stream = file.startWrite();
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			writer.write(out);
+			out.flush();
+			file.finishWrite(stream);
+		} catch (IOException e) {
+			Log.w(TAG, "Error writing snapshot", e);
+			if (stream != null) {
+				file.failWrite(stream);
+			}
+		}
+	}
+
+	private static String pageKey(String albumId, String albumName, String folderName, String sortMode) {
+		return Objects.toString(albumId, "") + '\u0000' + Objects.toString(albumName, "") + '\u0000'
+				+ Objects.toString(folderName, "") + '\u0000' + sortMode;
+	}
+}
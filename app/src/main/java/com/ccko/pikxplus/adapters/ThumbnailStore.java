@@ -0,0 +1,500 @@
+package com.ccko.pikxplus.adapters;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import com.ccko.pikxplus.utils.TaskScheduler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Grid thumbnails packed into a few large memory-mapped files.
+ *
+ * Every tile is a TILE_SIZE x TILE_SIZE JPEG (center-cropped, mostly 5-8 KB),
+ * stored in a fixed 8 KB slot of one of up to MAX_PACKS pack files; a tile that
+ * doesn't fit even at the lower quality isn't stored. That's room for ~24k
+ * tiles in at most 192 MB, so a whole large album stays in. A hit is a lookup
+ * in the in-memory index, one small copy out of the mapping and a decode of
+ * that: no file open, no provider call. A miss writes one slot. Tiles are keyed
+ * by MediaStore id + DATE_MODIFIED, an edited file gets a new tile.
+ *
+ * Only the grid's smaller tiers (up to TILE_SIZE, i.e. 4 or more columns) are
+ * served from here. The 360 / 512 tiers of the 2-3 column grids would need
+ * bigger tiles for little gain, they load the platform thumbnail as before and
+ * rely on Glide's memory cache.
+ *
+ * Each slot starts with its id and date, so a reader can tell when the slot was
+ * reused under it, and after a crash an index entry never shows another item's
+ * tile. The index itself is a small file rewritten in the background after
+ * changes. When the packs run out of free slots the least recently used tiles
+ * are evicted in a batch, and once tiles are spread thin over the packs the
+ * emptiest pack is moved into the others and deleted; both run on the
+ * BACKGROUND lane.
+ */
+public class ThumbnailStore {
+
+	private static final String TAG = "ThumbnailStore";
+
+	/** Edge of a stored tile; square requests up to this size can be served from the store. */
+	public static final int TILE_SIZE = 240; // the grid's override size
+
+	private static final int HEADER_BYTES = 20; // id, date_modified, JPEG length
+	private static final int RECORD_BYTES = 8 * 1024;
+	private static final int MAX_JPEG_BYTES = RECORD_BYTES - HEADER_BYTES;
+	private static final int QUALITY = 80;
+	private static final int FALLBACK_QUALITY = 60; // for the few busy tiles that don't fit at QUALITY
+	private static final int PACK_SLOTS = 2048; // 16 MB per pack file
+	private static final long PACK_BYTES = (long) PACK_SLOTS * RECORD_BYTES;
+	private static final int MAX_PACKS = 12;
+	private static final int EVICT_BATCH = PACK_SLOTS / 4;
+	private static final int MAGIC = 0x50585453; // "PXTS"
+	private static final int FORMAT_VERSION = 2;
+
+	private static volatile ThumbnailStore instance;
+
+	private final File dir;
+	private final AtomicFile indexFile;
+
+	// guarded by this
+	private boolean loaded;
+	private final Map<Long, Entry> entries = new HashMap<>();
+	private final Pack[] packs = new Pack[MAX_PACKS]; // null where there's no pack file
+	private long clock; // bumped on every hit, for LRU
+	private boolean maintenanceQueued;
+	private boolean indexWriteQueued;
+	private volatile boolean ready; // index read, contains() can answer
+	// id -> date of every entry, written under this but read without it by contains()
+	private final Map<Long, Long> dates = new ConcurrentHashMap<>();
+	private final AtomicBoolean loadQueued = new AtomicBoolean();
+
+	private static final class Entry {
+		final long id;
+		final long dateModified;
+		long lastUsed;
+		int pack;
+		int slot;
+
+		Entry(long id, long dateModified) {
+			this.id = id;
+			this.dateModified = dateModified;
+		}
+	}
+
+	private static final class Pack {
+		final MappedByteBuffer buffer;
+		final Entry[] slots = new Entry[PACK_SLOTS]; // includes slots being written
+		int used;
+
+		Pack(MappedByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+	}
+
+	public static ThumbnailStore getInstance(Context context) {
+		if (instance == null) {
+			synchronized (ThumbnailStore.class) {
+				if (instance == null) {
+					instance = new ThumbnailStore(context.getApplicationContext());
+				}
+			}
+		}
+		return instance;
+	}
+
+	private ThumbnailStore(Context appContext) {
+		dir = new File(appContext.getCacheDir(), "thumbnail_packs");
+		indexFile = new AtomicFile(new File(dir, "index.bin"));
+	}
+
+	/**
+	 * The stored tile, or null if there's none for this id and date. Reads the
+	 * mapping, call it off the main thread.
+	 */
+	public Bitmap get(long id, long dateModified) {
+		ByteBuffer record;
+		synchronized (this) {
+			ensureLoaded();
+			Entry entry = entries.get(id);
+			if (entry == null)
+				return null;
+			if (entry.dateModified != dateModified) {
+				free(entry); // the file was edited, its tile is stale
+				queueIndexWrite();
+				return null;
+			}
+			entry.lastUsed = ++clock;
+			record = record(entry.pack, entry.slot);
+		}
+
+		int start = record.position();
+		int length = record.getInt(start + 16);
+		if (length <= 0 || length > MAX_JPEG_BYTES)
+			return null;
+		byte[] jpeg = new byte[length];
+		ByteBuffer data = record.duplicate();
+		data.position(start + HEADER_BYTES);
+		data.get(jpeg);
+		// A put() reusing the slot writes its header first, so a torn copy shows up here
+		if (record.getLong(start) != id || record.getLong(start + 8) != dateModified)
+			return null;
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inPreferredConfig = Bitmap.Config.RGB_565;
+		return BitmapFactory.decodeByteArray(jpeg, 0, length, options);
+	}
+
+	/**
+	 * Whether there's a tile for this id and date. Cheap enough for binding: it
+	 * never reads the index itself, it's false until a background read is done,
+	 * and it doesn't take the store's lock (maintenance can hold it for a while).
+	 */
+	public boolean contains(long id, long dateModified) {
+		if (!ready) {
+			if (loadQueued.compareAndSet(false, true)) {
+				TaskScheduler.get().submit(TaskScheduler.Lane.BACKGROUND, null, () -> {
+					synchronized (this) {
+						ensureLoaded();
+					}
+				});
+			}
+			return false;
+		}
+		Long stored = dates.get(id);
+		return stored != null && stored == dateModified;
+	}
+
+	/**
+	 * Store a tile for this id and date, center-cropped from source. Writes the
+	 * mapping, call it off the main thread.
+	 */
+	public void put(long id, long dateModified, Bitmap source) {
+		synchronized (this) {
+			ensureLoaded();
+			Entry existing = entries.get(id);
+			if (existing != null && existing.dateModified == dateModified)
+				return;
+		}
+
+		Bitmap tile = toTile(source);
+		ByteArrayOutputStream jpeg = new ByteArrayOutputStream(MAX_JPEG_BYTES);
+		tile.compress(Bitmap.CompressFormat.JPEG, QUALITY, jpeg);
+		if (jpeg.size() > MAX_JPEG_BYTES) {
+			jpeg.reset();
+			tile.compress(Bitmap.CompressFormat.JPEG, FALLBACK_QUALITY, jpeg);
+		}
+		tile.recycle();
+		if (jpeg.size() > MAX_JPEG_BYTES)
+			return; // too busy for a slot, it keeps loading the platform thumbnail
+
+		Entry entry;
+		ByteBuffer record;
+		synchronized (this) {
+			entry = allocate(new Entry(id, dateModified), true);
+			if (entry == null)
+				return; // full, eviction has been queued
+			record = record(entry.pack, entry.slot);
+		}
+		record.putLong(id).putLong(dateModified).putInt(jpeg.size());
+		record.put(jpeg.toByteArray());
+
+		synchronized (this) {
+			if (packs[entry.pack] == null || packs[entry.pack].slots[entry.slot] != entry)
+				return; // the pack was dropped meanwhile
+			Entry replaced = entries.put(id, entry);
+			if (replaced != null) {
+				free(replaced);
+			}
+			dates.put(id, dateModified);
+			entry.lastUsed = ++clock;
+			queueIndexWrite();
+		}
+	}
+
+	// Center-crop and scale into a TILE_SIZE square
+	private static Bitmap toTile(Bitmap source) {
+		if (source.getConfig() == Bitmap.Config.HARDWARE) {
+			source = source.copy(Bitmap.Config.ARGB_8888, false);
+		}
+		Bitmap tile = Bitmap.createBitmap(TILE_SIZE, TILE_SIZE, Bitmap.Config.ARGB_8888);
+		float scale = Math.max((float) TILE_SIZE / source.getWidth(), (float) TILE_SIZE / source.getHeight());
+		Matrix matrix = new Matrix();
+		matrix.setScale(scale, scale);
+		matrix.postTranslate((TILE_SIZE - source.getWidth() * scale) / 2f,
+				(TILE_SIZE - source.getHeight() * scale) / 2f);
+		new Canvas(tile).drawBitmap(source, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+		return tile;
+	}
+
+	// Slot positioned at its header, limited to its record
+	private ByteBuffer record(int pack, int slot) {
+		ByteBuffer record = packs[pack].buffer.duplicate();
+		int start = slot * RECORD_BYTES;
+		record.limit(start + RECORD_BYTES);
+		record.position(start);
+		return record;
+	}
+
+	// Claim a free slot for the entry, opening a new pack if allowed; null if there's none
+	private Entry allocate(Entry entry, boolean mayOpenPack) {
+		int free = 0;
+		for (Pack pack : packs) {
+			if (pack != null)
+				free += PACK_SLOTS - pack.used;
+		}
+		if (free <= EVICT_BATCH) {
+			queueMaintenance(); // make room before it's needed
+		}
+
+		for (int p = 0; p < MAX_PACKS; p++) {
+			Pack pack = packs[p];
+			if (pack == null || pack.used == PACK_SLOTS)
+				continue;
+			for (int slot = 0; slot < PACK_SLOTS; slot++) {
+				if (pack.slots[slot] == null) {
+					claim(entry, p, slot);
+					return entry;
+				}
+			}
+		}
+		for (int p = 0; p < MAX_PACKS && mayOpenPack; p++) {
+			if (packs[p] == null) {
+				packs[p] = openPack(p);
+				if (packs[p] == null)
+					return null;
+				claim(entry, p, 0);
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	private void claim(Entry entry, int pack, int slot) {
+		entry.pack = pack;
+		entry.slot = slot;
+		packs[pack].slots[slot] = entry;
+		packs[pack].used++;
+	}
+
+	private void free(Entry entry) {
+		if (entries.get(entry.id) == entry) {
+			entries.remove(entry.id);
+			dates.remove(entry.id);
+		}
+		Pack pack = packs[entry.pack];
+		if (pack != null && pack.slots[entry.slot] == entry) {
+			pack.slots[entry.slot] = null;
+			pack.used--;
+		}
+	}
+
+	private Pack openPack(int number) {
+		try {
+			if (!dir.isDirectory() && !dir.mkdirs()) {
+				throw new IOException("Can't create " + dir);
+			}
+			// The mapping stays valid after the file is closed
+			try (RandomAccessFile file = new RandomAccessFile(packFile(number), "rw")) {
+				file.setLength(PACK_BYTES);
+				return new Pack(file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, PACK_BYTES));
+			}
+		} catch (IOException e) {
+			Log.w(TAG, "Can't map thumbnail pack " + number, e);
+			return null;
+		}
+	}
+
+	private File packFile(int number) {
+		return new File(dir, "pack-" + number + ".bin");
+	}
+
+	// Eviction and compaction
+
+	private void queueMaintenance() {
+		if (maintenanceQueued)
+			return;
+		maintenanceQueued = true;
+		TaskScheduler.get().submit(TaskScheduler.Lane.BACKGROUND, null, this::maintain);
+	}
+
+	private synchronized void maintain() {
+		maintenanceQueued = false;
+		int packCount = 0;
+		int free = 0;
+		for (Pack pack : packs) {
+			if (pack != null) {
+				packCount++;
+				free += PACK_SLOTS - pack.used;
+			}
+		}
+
+		// Full: drop the least recently used batch
+		if (packCount == MAX_PACKS && free <= EVICT_BATCH) {
+			List<Entry> byAge = new ArrayList<>(entries.values());
+			Collections.sort(byAge, (a, b) -> Long.compare(a.lastUsed, b.lastUsed));
+			for (int i = 0; i < Math.min(EVICT_BATCH, byAge.size()); i++) {
+				free(byAge.get(i));
+			}
+		}
+
+		// Thin: move the emptiest pack into the others' free slots and delete it
+		while (packCount > 1 && free >= PACK_SLOTS + EVICT_BATCH) {
+			int emptiest = -1;
+			for (int p = 0; p < MAX_PACKS; p++) {
+				if (packs[p] != null && (emptiest < 0 || packs[p].used < packs[emptiest].used)) {
+					emptiest = p;
+				}
+			}
+			Pack source = packs[emptiest];
+			packs[emptiest] = null; // allocate() must not pick it
+			for (int slot = 0; slot < PACK_SLOTS; slot++) {
+				Entry entry = source.slots[slot];
+				if (entry == null || entries.get(entry.id) != entry)
+					continue; // free, or still being written (that put() drops it)
+				// The others have room for all of it, see the loop condition
+				ByteBuffer from = source.buffer.duplicate();
+				from.limit(slot * RECORD_BYTES + RECORD_BYTES);
+				from.position(slot * RECORD_BYTES);
+				if (allocate(entry, false) == null) {
+					free(entry); // its pack is detached already, this only drops the entry
+					continue;
+				}
+				record(entry.pack, entry.slot).put(from);
+			}
+			if (!packFile(emptiest).delete()) {
+				Log.w(TAG, "Can't delete thumbnail pack " + emptiest);
+			}
+			packCount--;
+			free -= PACK_SLOTS;
+		}
+		queueIndexWrite();
+	}
+
+	// Index file
+
+	private void queueIndexWrite() {
+		if (indexWriteQueued)
+			return;
+		indexWriteQueued = true;
+		TaskScheduler.get().submit(TaskScheduler.Lane.BACKGROUND, null, this::writeIndex);
+	}
+
+	private void writeIndex() {
+		List<Entry> copy;
+		long clockCopy;
+		synchronized (this) {
+			indexWriteQueued = false;
+			copy = new ArrayList<>(entries.size());
+			for (Entry entry : entries.values()) {
+				Entry snapshot = new Entry(entry.id, entry.dateModified);
+				snapshot.lastUsed = entry.lastUsed;
+				snapshot.pack = entry.pack;
+				snapshot.slot = entry.slot;
+				copy.add(snapshot);
+			}
+			clockCopy = clock;
+		}
+
+		synchronized (indexFile) {
+			FileOutputStream stream = null;
+			try {
+				stream = indexFile.startWrite();
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeInt(TILE_SIZE);
+				out.writeLong(clockCopy);
+				out.writeInt(copy.size());
+				for (Entry entry : copy) {
+					out.writeLong(entry.id);
+					out.writeLong(entry.dateModified);
+					out.writeLong(entry.lastUsed);
+					out.writeByte(entry.pack);
+					out.writeShort(entry.slot);
+				}
+				out.flush();
+				indexFile.finishWrite(stream);
+			} catch (IOException e) {
+				Log.w(TAG, "Error writing thumbnail index", e);
+				if (stream != null) {
+					indexFile.failWrite(stream);
+				}
+			}
+		}
+	}
+
+	private void ensureLoaded() {
+		if (loaded)
+			return;
+		loaded = true;
+		readIndex();
+		ready = true;
+	}
+
+	private void readIndex() {
+		for (int p = 0; p < MAX_PACKS; p++) {
+			File file = packFile(p);
+			if (file.length() == PACK_BYTES) {
+				packs[p] = openPack(p);
+			} else if (file.exists() && !file.delete()) {
+				Log.w(TAG, "Can't delete broken thumbnail pack " + p);
+			}
+		}
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(indexFile.openRead()))) {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readInt() != TILE_SIZE)
+				return;
+			clock = in.readLong();
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				Entry entry = new Entry(in.readLong(), in.readLong());
+				entry.lastUsed = in.readLong();
+				int pack = in.readByte();
+				int slot = in.readShort();
+				if (pack < 0 || pack >= MAX_PACKS || packs[pack] == null || slot < 0 || slot >= PACK_SLOTS
+						|| packs[pack].slots[slot] != null)
+					continue;
+				claim(entry, pack, slot);
+				entries.put(entry.id, entry);
+				dates.put(entry.id, entry.dateModified);
+			}
+		} catch (FileNotFoundException e) {
+			// first run
+		} catch (IOException | RuntimeException e) {
+			Log.w(TAG, "Dropping unreadable thumbnail index", e);
+			entries.clear();
+			dates.clear();
+			for (Pack pack : packs) {
+				if (pack != null) {
+					Arrays.fill(pack.slots, null);
+					pack.used = 0;
+				}
+			}
+			indexFile.delete();
+		}
+	}
+}
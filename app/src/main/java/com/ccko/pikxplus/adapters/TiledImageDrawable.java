@@ -0,0 +1,382 @@
+package com.ccko.pikxplus.adapters;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.ccko.pikxplus.utils.TaskScheduler;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Deep-zoom drawable for images much larger than the screen, backed by a
+ * BitmapRegionDecoder.
+ *
+ * open() decodes one screen-sized base layer of the whole image (the power of
+ * two sample that still covers the screen when fitted), so the viewer shows it
+ * right away. Its intrinsic size is the full image size, so the viewer's
+ * imageMatrix pan/zoom, fit and clamp math work unchanged. On every draw it
+ * reads the ImageView's image matrix, picks the sample that matches the current
+ * zoom and decodes the visible TILE_SIZE tiles of that level on the
+ * VISIBLE_DECODE lane. Missing tiles are covered by a coarser cached tile, or
+ * the base layer, until they arrive. Tiles live in a byte-bounded LRU cache.
+ *
+ * EXIF rotations are applied when drawing; mirrored images, animated images and
+ * formats BitmapRegionDecoder can't read are left to the normal decode (open()
+ * returns null).
+ */
+public final class TiledImageDrawable extends Drawable {
+
+	/** Tile side in decoded pixels, at every sample level. */
+	private static final int TILE_SIZE = 512;
+
+	private final BitmapRegionDecoder decoder; // guarded by itself once shared with the workers
+	private final int sourceWidth;
+	private final int sourceHeight;
+	private final int rotation; // 0, 90, 180, 270 clockwise
+	private final Bitmap base;
+	private final int baseSample;
+
+	private final LruCache<Long, Bitmap> tiles;
+	private final Set<Long> pending = Collections.synchronizedSet(new HashSet<>());
+	private volatile Set<Long> wanted = Collections.emptySet();
+	private final TaskScheduler.Token token = new TaskScheduler.Token();
+	private final Handler mainHandler = new Handler(Looper.getMainLooper());
+	private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+	// Drawing state, UI thread only
+	private final Matrix sourceToBounds = new Matrix();
+	private final Matrix sourceToView = new Matrix();
+	private final Matrix viewToSource = new Matrix();
+	private final RectF visible = new RectF();
+	private final RectF tileBounds = new RectF();
+	private final Rect tileRegion = new Rect();
+	private int lastSample;
+	private final Rect lastRange = new Rect();
+
+	private TiledImageDrawable(BitmapRegionDecoder decoder, int rotation, Bitmap base, int baseSample) {
+		this.decoder = decoder;
+		this.sourceWidth = decoder.getWidth();
+		this.sourceHeight = decoder.getHeight();
+		this.rotation = rotation;
+		this.base = base;
+		this.baseSample = baseSample;
+		tiles = new LruCache<Long, Bitmap>((int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 8)) {
+			@Override
+			protected int sizeOf(Long key, Bitmap value) {
+				return value.getAllocationByteCount();
+			}
+		};
+	}
+
+	/**
+	 * Whether an image of width x height (as MediaStore has it, before EXIF
+	 * rotation) is worth opening for tiles in a viewWidth x viewHeight view,
+	 * decided without touching the file: it has to be more than twice the view's
+	 * size whichever way it's turned. Unknown sizes (0) are left to open().
+	 */
+	public static boolean worthTiling(int width, int height, int viewWidth, int viewHeight) {
+		if (width <= 0 || height <= 0)
+			return true;
+		float fit = Math.max(Math.min((float) viewWidth / width, (float) viewHeight / height),
+				Math.min((float) viewWidth / height, (float) viewHeight / width));
+		return fit <= 0.5f;
+	}
+
+	/**
+	 * Open uri for tiled display in a viewWidth x viewHeight view. Null if the
+	 * image isn't worth tiling (no bigger than twice the screen) or can't be
+	 * tiled. Does I/O and decodes the base layer, call it off the UI thread.
+	 */
+	@Nullable
+	public static TiledImageDrawable open(Context context, Uri uri, int viewWidth, int viewHeight)
+			throws IOException {
+		if (viewWidth <= 0 || viewHeight <= 0)
+			return null;
+		try (ParcelFileDescriptor pfd = context.getContentResolver().openFileDescriptor(uri, "r")) {
+			if (pfd == null)
+				return null;
+			FileDescriptor fd = pfd.getFileDescriptor();
+
+			int rotation = 0;
+			try {
+				switch (new ExifInterface(fd).getAttributeInt(ExifInterface.TAG_ORIENTATION,
+						ExifInterface.ORIENTATION_NORMAL)) {
+					case ExifInterface.ORIENTATION_NORMAL:
+					case ExifInterface.ORIENTATION_UNDEFINED:
+						break;
+					case ExifInterface.ORIENTATION_ROTATE_90:
+						rotation = 90;
+						break;
+					case ExifInterface.ORIENTATION_ROTATE_180:
+						rotation = 180;
+						break;
+					case ExifInterface.ORIENTATION_ROTATE_270:
+						rotation = 270;
+						break;
+					default:
+						return null; // mirrored, leave it to ImageDecoder
+				}
+				Os.lseek(fd, 0, OsConstants.SEEK_SET);
+			} catch (IOException ignored) {
+				// no EXIF in this format
+			} catch (ErrnoException e) {
+				return null; // not seekable
+			}
+
+			// Keeps its own duplicate of the descriptor, closing ours is fine
+			BitmapRegionDecoder decoder = newDecoder(fd);
+			if (decoder == null)
+				return null;
+
+			boolean sideways = rotation == 90 || rotation == 270;
+			int displayWidth = sideways ? decoder.getHeight() : decoder.getWidth();
+			int displayHeight = sideways ? decoder.getWidth() : decoder.getHeight();
+			float fit = Math.min((float) viewWidth / displayWidth, (float) viewHeight / displayHeight);
+			int baseSample = 1;
+			while (baseSample * 2 <= 1 / fit) {
+				baseSample *= 2;
+			}
+			if (baseSample == 1) {
+				decoder.recycle();
+				return null; // a plain decode is about screen-sized anyway
+			}
+
+			BitmapFactory.Options options = new BitmapFactory.Options();
+			options.inSampleSize = baseSample;
+			options.inPreferredConfig = Bitmap.Config.RGB_565;
+			Bitmap base = decoder.decodeRegion(new Rect(0, 0, decoder.getWidth(), decoder.getHeight()), options);
+			if (base == null) {
+				decoder.recycle();
+				return null;
+			}
+			return new TiledImageDrawable(decoder, rotation, base, baseSample);
+		}
+	}
+
+	@SuppressWarnings("deprecation") // the boolean overload is the only one before S
+	private static BitmapRegionDecoder newDecoder(FileDescriptor fd) throws IOException {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S)
+			return BitmapRegionDecoder.newInstance(fd);
+		return BitmapRegionDecoder.newInstance(fd, false);
+	}
+
+	@Override
+	public int getIntrinsicWidth() {
+		return rotation == 90 || rotation == 270 ? sourceHeight : sourceWidth;
+	}
+
+	@Override
+	public int getIntrinsicHeight() {
+		return rotation == 90 || rotation == 270 ? sourceWidth : sourceHeight;
+	}
+
+	@Override
+	protected void onBoundsChange(@NonNull Rect bounds) {
+		// Rotate the source about its origin, then fit the rotated rect into the bounds
+		sourceToBounds.setRotate(rotation);
+		RectF rotated = new RectF(0, 0, sourceWidth, sourceHeight);
+		sourceToBounds.mapRect(rotated);
+		Matrix fit = new Matrix();
+		fit.setRectToRect(rotated, new RectF(bounds), Matrix.ScaleToFit.FILL);
+		sourceToBounds.postConcat(fit);
+		lastSample = 0; // the visible range needs recomputing
+	}
+
+	@Override
+	public void draw(@NonNull Canvas canvas) {
+		canvas.save();
+		canvas.concat(sourceToBounds);
+		tileBounds.set(0, 0, sourceWidth, sourceHeight);
+		canvas.drawBitmap(base, null, tileBounds, paint);
+
+		int sample = visibleSample();
+		if (sample > 0 && sample < baseSample) {
+			int span = TILE_SIZE * sample;
+			int left = Math.max(0, (int) (visible.left / span));
+			int top = Math.max(0, (int) (visible.top / span));
+			int right = Math.min((sourceWidth - 1) / span, (int) (visible.right / span));
+			int bottom = Math.min((sourceHeight - 1) / span, (int) (visible.bottom / span));
+			if (sample != lastSample || lastRange.left != left || lastRange.top != top || lastRange.right != right
+					|| lastRange.bottom != bottom) {
+				lastSample = sample;
+				lastRange.set(left, top, right, bottom);
+				Set<Long> keys = new HashSet<>();
+				for (int row = top; row <= bottom; row++) {
+					for (int col = left; col <= right; col++) {
+						keys.add(key(sample, row, col));
+					}
+				}
+				wanted = keys;
+			}
+
+			// Coarser tiles under the missing ones first, then this level on top
+			for (int row = top; row <= bottom; row++) {
+				for (int col = left; col <= right; col++) {
+					if (tiles.get(key(sample, row, col)) == null) {
+						drawFallback(canvas, sample, row, col);
+						requestTile(sample, row, col);
+					}
+				}
+			}
+			for (int row = top; row <= bottom; row++) {
+				for (int col = left; col <= right; col++) {
+					drawTile(canvas, sample, row, col);
+				}
+			}
+		} else if (lastSample != 0) {
+			lastSample = 0; // the base layer is enough, drop queued tiles
+			wanted = Collections.emptySet();
+		}
+		canvas.restore();
+	}
+
+	// The sample level matching the host ImageView's current zoom, visible set to
+	// the part of the source on screen. 0 if there's no host to ask.
+	private int visibleSample() {
+		Callback callback = getCallback();
+		if (!(callback instanceof ImageView))
+			return 0;
+		ImageView view = (ImageView) callback;
+		sourceToView.set(sourceToBounds);
+		sourceToView.postConcat(view.getImageMatrix());
+		if (!sourceToView.invert(viewToSource))
+			return 0;
+		visible.set(0, 0, view.getWidth(), view.getHeight());
+		viewToSource.mapRect(visible);
+		if (!visible.intersect(0, 0, sourceWidth, sourceHeight))
+			return 0;
+
+		// Screen pixels per source pixel; the largest sample still at least that sharp
+		float scale = sourceToView.mapRadius(1f);
+		int sample = 1;
+		while (sample * 2 <= 1 / scale && sample * 2 <= baseSample) {
+			sample *= 2;
+		}
+		return sample;
+	}
+
+	private void drawTile(Canvas canvas, int sample, int row, int col) {
+		Bitmap tile = tiles.get(key(sample, row, col));
+		if (tile != null) {
+			tileRect(sample, row, col, tileRegion);
+			tileBounds.set(tileRegion);
+			canvas.drawBitmap(tile, null, tileBounds, paint);
+		}
+	}
+
+	private void drawFallback(Canvas canvas, int sample, int row, int col) {
+		for (int coarser = sample * 2; coarser < baseSample; coarser *= 2) {
+			row /= 2;
+			col /= 2;
+			if (tiles.get(key(coarser, row, col)) != null) {
+				drawTile(canvas, coarser, row, col);
+				return;
+			}
+		}
+		// otherwise the base layer already covers it
+	}
+
+	private void requestTile(int sample, int row, int col) {
+		long key = key(sample, row, col);
+		if (!pending.add(key))
+			return;
+		Rect region = new Rect();
+		tileRect(sample, row, col, region);
+		TaskScheduler.get().submit(TaskScheduler.Lane.VISIBLE_DECODE, token, () -> decodeTile(key, sample, region));
+	}
+
+	private void decodeTile(long key, int sample, Rect region) {
+		try {
+			if (!wanted.contains(key))
+				return; // panned / zoomed away while queued
+			BitmapFactory.Options options = new BitmapFactory.Options();
+			options.inSampleSize = sample;
+			options.inPreferredConfig = Bitmap.Config.RGB_565;
+			Bitmap tile;
+			synchronized (decoder) {
+				if (decoder.isRecycled())
+					return;
+				tile = decoder.decodeRegion(region, options);
+			}
+			if (tile != null) {
+				tiles.put(key, tile);
+				mainHandler.post(this::invalidateSelf);
+			}
+		} finally {
+			pending.remove(key);
+		}
+	}
+
+	// The part of the source tile (row, col) of a sample level covers
+	private void tileRect(int sample, int row, int col, Rect into) {
+		int span = TILE_SIZE * sample;
+		into.set(col * span, row * span, Math.min(sourceWidth, (col + 1) * span),
+				Math.min(sourceHeight, (row + 1) * span));
+	}
+
+	private static long key(int sample, int row, int col) {
+		return ((long) Integer.numberOfTrailingZeros(sample) << 48) | ((long) row << 24) | col;
+	}
+
+	/**
+	 * Stop decoding and let go of the decoder and tiles, once the drawable is off
+	 * screen for good.
+	 */
+	public void recycle() {
+		token.cancel();
+		wanted = Collections.emptySet();
+		tiles.evictAll();
+		// A running decode holds the decoder's lock, don't wait for it here
+		TaskScheduler.get().submit(TaskScheduler.Lane.BACKGROUND, null, () -> {
+			synchronized (decoder) {
+				decoder.recycle();
+			}
+		});
+	}
+
+	@Override
+	public void setAlpha(int alpha) {
+		paint.setAlpha(alpha);
+		invalidateSelf();
+	}
+
+	@Override
+	public void setColorFilter(@Nullable ColorFilter colorFilter) {
+		paint.setColorFilter(colorFilter);
+		invalidateSelf();
+	}
+
+	@Override
+	@SuppressWarnings("deprecation") // still abstract in Drawable
+	public int getOpacity() {
+		return base.hasAlpha() ? PixelFormat.TRANSLUCENT : PixelFormat.OPAQUE;
+	}
+}
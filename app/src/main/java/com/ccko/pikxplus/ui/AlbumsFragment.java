@@ -19,7 +19,11 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.bumptech.glide.Glide;
 import com.ccko.pikxplus.R;
 import com.ccko.pikxplus.adapters.AlbumInfo;
+import com.ccko.pikxplus.adapters.MediaIndex;
 import com.ccko.pikxplus.adapters.MediaStoreHelper;
+import com.ccko.pikxplus.adapters.MediaThumbnailLoader;
+import com.ccko.pikxplus.adapters.SnapshotStore;
+import com.ccko.pikxplus.utils.TaskScheduler;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -30,6 +34,8 @@ public class AlbumsFragment extends Fragment {
   private AlbumsAdapter adapter;
   private List<AlbumInfo> albumsList = new ArrayList<>();
   private OnAlbumSelectedListener listener;
+  // Cancelled with the view, so loads started for a dead view never run
+  private TaskScheduler.Token viewTasks;
 
   // Keep old Album class for backward compatibility during migration
   public static class Album {
@@ -165,6 +171,7 @@ public class AlbumsFragment extends Fragment {
         // Load thumbnail
         Glide.with(itemView.getContext())
             .load(album.thumbnailUri)
+            .set(MediaThumbnailLoader.PLATFORM_THUMBNAIL, true)
             .override(240, 240)
             .centerCrop()
             .encodeQuality(70)
@@ -185,31 +192,69 @@ public class AlbumsFragment extends Fragment {
   @Override
   public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
     super.onViewCreated(view, savedInstanceState);
+    viewTasks = TaskScheduler.Token.forLifecycle(getViewLifecycleOwner());
+
+    // Last run's albums right away, loadAlbums() then replaces them with fresh ones
+    if (albumsList.isEmpty()) {
+      List<AlbumInfo> snapshot = SnapshotStore.getInstance(requireContext()).getAlbums();
+      if (snapshot != null && !snapshot.isEmpty()) {
+        albumsList.addAll(snapshot);
+        adapter.notifyDataSetChanged();
+      }
+    }
     loadAlbums();
   }
 
   public void loadAlbums() {
-    new Thread(
-            () -> {
-              // Use new MediaStoreHelper
-              List<AlbumInfo> loadedAlbums = MediaStoreHelper.loadAlbums(getContext());
+    if (getContext() == null || viewTasks == null) return;
+    Context appContext = getContext().getApplicationContext();
 
-              if (getActivity() != null) {
-                getActivity()
-                    .runOnUiThread(
+    TaskScheduler.Token token = viewTasks;
+    TaskScheduler.get()
+        .submit(
+            TaskScheduler.Lane.UI_CRITICAL,
+            token,
+            () -> {
+              MediaIndex index = MediaIndex.getInstance(appContext);
+              if (index.isReady()) {
+                // Show the indexed albums right away, then catch up with MediaStore changes
+                showAlbums(index.loadAlbums());
+                TaskScheduler.get()
+                    .submit(
+                        TaskScheduler.Lane.BACKGROUND,
+                        token,
                         () -> {
-                          albumsList.clear();
-                          albumsList.addAll(loadedAlbums);
-                          adapter.notifyDataSetChanged();
-
-                          if (albumsList.isEmpty()) {
-                            Toast.makeText(getContext(), "No albums found", Toast.LENGTH_SHORT)
-                                .show();
+                          if (index.sync()) {
+                            showAlbums(index.loadAlbums());
                           }
                         });
+              } else {
+                // First run: scan MediaStore directly while the index is being built
+                List<AlbumInfo> albums =
+                    MediaStoreHelper.loadAlbums(appContext, token.getSignal());
+                if (token.isCancelled()) return;
+                showAlbums(albums);
+                TaskScheduler.get().submit(TaskScheduler.Lane.BACKGROUND, null, index::sync);
               }
-            })
-        .start();
+            });
+  }
+
+  // Called off the main thread with freshly loaded albums
+  private void showAlbums(List<AlbumInfo> loadedAlbums) {
+    if (getActivity() != null) {
+      SnapshotStore.getInstance(getActivity()).saveAlbums(loadedAlbums);
+      getActivity()
+          .runOnUiThread(
+              () -> {
+                albumsList.clear();
+                albumsList.addAll(loadedAlbums);
+                adapter.notifyDataSetChanged();
+
+                if (albumsList.isEmpty()) {
+                  Toast.makeText(getContext(), "No albums found", Toast.LENGTH_SHORT).show();
+                }
+              });
+    }
   }
 
   @Override
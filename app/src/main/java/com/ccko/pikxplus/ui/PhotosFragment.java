@@ -1,8 +1,14 @@
 package com.ccko.pikxplus.ui;
 
+import android.content.Context;
+import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.SystemClock;
+import android.util.DisplayMetrics;
 import android.util.Log;
+import android.util.LruCache;
 import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -18,27 +24,56 @@ import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentResultListener;
 import androidx.lifecycle.Observer;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.ListUpdateCallback;
 import androidx.recyclerview.widget.RecyclerView;
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.DataSource;
 import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.Target;
 import com.ccko.pikxplus.MainActivity;
 import com.ccko.pikxplus.R;
+import com.ccko.pikxplus.adapters.AnimatedImageClassifier;
+import com.ccko.pikxplus.adapters.MediaIndex;
 import com.ccko.pikxplus.adapters.MediaItems;
+import com.ccko.pikxplus.adapters.MediaSessionRepository;
 import com.ccko.pikxplus.adapters.MediaStoreHelper;
+import com.ccko.pikxplus.adapters.MediaTable;
+import com.ccko.pikxplus.adapters.MediaThumbnailLoader;
+import com.ccko.pikxplus.adapters.SearchIndex;
+import com.ccko.pikxplus.adapters.SnapshotStore;
+import com.ccko.pikxplus.adapters.ThumbnailStore;
 import com.ccko.pikxplus.utils.FloatingWindowManager;
 import com.ccko.pikxplus.utils.SharedViewModel;
-import java.math.BigInteger;
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
+import com.ccko.pikxplus.utils.TaskScheduler;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
 
 public class PhotosFragment extends Fragment {
 
   private static final String TAG = "PhotosFragment";
   private RecyclerView recyclerView;
+  private ScrollPrefetcher scrollPrefetcher;
+  // Thumbnail sizes requests snap to, so cells of about the same size share cache entries
+  private static final int[] THUMB_TIERS = {96, 160, 240, 360, 512};
+  private static final int LIST_THUMB_DP = 60; // item_photo_list's thumbnail
+  private static final int RECENT_THUMBS = 512;
+  // (id, tier) of thumbnails loaded lately, most likely still in Glide's memory cache
+  private final LruCache<Long, Boolean> recentThumbs = new LruCache<>(RECENT_THUMBS);
   private PhotosAdapter adapter;
-  private List<MediaItems> mediaList = new ArrayList<>();
+  private MediaTable mediaList = new MediaTable();
+  // What the adapter shows: mediaList changes reach it through publishList() (a diff of the
+  // two, computed off the main thread) or publishAppended() (rows added at the end)
+  private MediaTable shownList = new MediaTable();
+  private TaskScheduler.Task diffTask = null;
+  private int publishGeneration = 0;
   private String albumId;
   private String albumName;
   private TextView albumTitle;
@@ -46,10 +81,9 @@ public class PhotosFragment extends Fragment {
   private FloatingWindowManager floatingWindow;
 
   // preloading the Photos
-  private boolean isLoadingImages = false;
-  private boolean isLoadingVideos = false;
-  private Thread imagesLoadingThread = null;
-  private Thread videosLoadingThread = null;
+  private TaskScheduler.Task loadTask = null;
+  private TaskScheduler.Token viewTasks = null; // cancelled with the view
+  private CancellationSignal loadCancellation = null; // aborts the provider queries of a load
 
   private SearchFragment.Filter currentFilter = null;
   private String folderName;
@@ -66,9 +100,57 @@ public class PhotosFragment extends Fragment {
   private boolean isGridView = true; // true = grid, false = list
   private static final String PREF_KEY_VIEW_MODE = "photos_grid_span";
 
-  private Thread loadingThread = null;
   private SharedViewModel sharedViewModel;
 
+  // Database-side paging of album contents
+  private static final int PAGE_SIZE = 300;
+  private static final int PAGE_PREFETCH_DISTANCE = 90; // items left before asking for the next page
+  private boolean hasMorePages = false;
+  private boolean isLoadingPage = false;
+  private boolean scrollAfterPage = false; // the last viewed item is in a page not loaded yet
+  private int loadToken = 0; // bumped per reload, stale pages are dropped
+
+  // Progressive loading: first screen right away, the rest appended in chunks
+  private static final int FIRST_SCREEN_ROWS = 12; // when the grid isn't laid out yet
+  private static final int APPEND_CHUNK_SIZE = 1000;
+  private boolean isAppending = false; // mediaList is still being filled
+
+  // Sorted row orders of the loaded album per sort field (see sortField)
+  private final int[][] sortOrders = new int[3][];
+  private int sortOrdersVersion = -1;
+  private TaskScheduler.Task sortOrdersTask = null;
+  private TaskScheduler.Task sortTask = null; // an order applySort() / the filter is waiting for
+
+  // Filters run on the whole album in memory, never against MediaStore
+  private MediaTable searchTable = null; // the whole album, in searchSortMode order
+  private SearchIndex searchIndex = null; // over searchTable's rows
+  private SortMode searchSortMode = null;
+  private TaskScheduler.Task searchIndexTask = null;
+  private boolean isFiltered = false; // mediaList holds a filter result
+  // The last evaluated filter, a longer query only narrows it down
+  private long[] lastMatch = null;
+  private String lastMatchQuery = null;
+  private Set<String> lastMatchTypes = null;
+  private TaskScheduler.Task filterTask = null;
+  private int filterGeneration = 0;
+
+  // WebPs show as plain images until the background check finds them animated
+  private final AnimatedImageClassifier.Listener animatedListener =
+      ids -> {
+        if (adapter == null) return;
+        mediaList.upgradeAnimated(ids);
+        for (int position : shownList.upgradeAnimated(ids)) {
+          adapter.notifyItemChanged(position + 1); // +1 for the header
+        }
+        if (searchIndex != null) {
+          for (int position : searchTable.upgradeAnimated(ids)) {
+            searchIndex.updateType(
+                searchTable.row(position), MediaItems.MediaType.ANIMATED_IMAGE);
+            lastMatch = null; // type bitsets changed under it
+          }
+        }
+      };
+
   // Keep old Photo class for backward compatibility with ViewerFragment
   public static class Photo {
     public String id;
@@ -157,7 +239,183 @@ public class PhotosFragment extends Fragment {
 
   public void applyFilter(SearchFragment.Filter filter) {
     this.currentFilter = filter;
-    loadAlbumPhotos();
+    showFilterResult();
+  }
+
+  private static boolean isActive(@Nullable SearchFragment.Filter filter) {
+    return filter != null && (!filter.types.isEmpty() || !filter.query.trim().isEmpty());
+  }
+
+  // Swap mediaList for the items matching currentFilter, or back to the whole album
+  private void showFilterResult() {
+    if (adapter == null || isAppending) return; // the load calls back when it's done
+    boolean active = isActive(currentFilter);
+    if (!active && !isFiltered) return; // the whole album is already showing
+    if (searchIndex == null) {
+      buildSearchIndex(); // comes back here when ready
+      return;
+    }
+
+    if (searchSortMode != currentSortMode) {
+      sortSearchTable(); // comes back here when sorted
+      return;
+    }
+
+    // A newer keystroke makes any evaluation still running pointless
+    final int generation = ++filterGeneration;
+    if (filterTask != null) {
+      filterTask.cancel();
+      filterTask = null;
+    }
+    if (!active) {
+      showRows(null);
+      return;
+    }
+
+    final SearchIndex index = searchIndex;
+    final String query = currentFilter.query;
+    final Set<String> types = new HashSet<>(currentFilter.types);
+    final long[] previous =
+        lastMatch != null && SearchIndex.narrows(lastMatchQuery, lastMatchTypes, query, types)
+            ? lastMatch
+            : null;
+    filterTask =
+        TaskScheduler.get()
+            .submit(
+                TaskScheduler.Lane.UI_CRITICAL,
+                viewTasks,
+                () -> {
+                  long start = SystemClock.elapsedRealtime();
+                  long[] match =
+                      previous != null
+                          ? index.narrow(previous, query, types)
+                          : index.match(query, types);
+                  if (match == null || getActivity() == null) return; // cancelled
+                  long cost = SystemClock.elapsedRealtime() - start;
+                  getActivity()
+                      .runOnUiThread(
+                          () -> {
+                            if (generation != filterGeneration || index != searchIndex) return;
+                            filterTask = null;
+                            lastMatch = match;
+                            lastMatchQuery = query;
+                            lastMatchTypes = types;
+                            if (sharedViewModel != null) {
+                              sharedViewModel.setFilterCost(cost);
+                            }
+                            showRows(match);
+                          });
+                });
+  }
+
+  // Put searchTable in currentSortMode order, sorted in the background
+  private void sortSearchTable() {
+    final MediaTable table = searchTable;
+    final int version = table.version();
+    final SortMode sortMode = currentSortMode;
+    final int field = sortField(sortMode);
+    if (sortTask != null) {
+      sortTask.cancel();
+    }
+    sortTask =
+        TaskScheduler.get()
+            .submit(
+                TaskScheduler.Lane.UI_CRITICAL,
+                viewTasks,
+                () -> {
+                  final int[] order = table.sortedOrder(ascendingOrder(table, field));
+                  if (getActivity() == null) return;
+                  getActivity()
+                      .runOnUiThread(
+                          () -> {
+                            sortTask = null;
+                            // Dropped if the table changed meanwhile, showFilterResult() sorts
+                            // whatever is current again
+                            if (table == searchTable && table.version() == version) {
+                              table.setOrder(order, isDescending(sortMode));
+                              searchSortMode = sortMode;
+                            }
+                            showFilterResult();
+                          });
+                });
+  }
+
+  // Rows of searchTable set in match, or all of them for null
+  private void showRows(@Nullable long[] match) {
+    ++loadToken; // a page still on its way belongs to the old list
+    scrollAfterPage = false;
+    mediaList.clear();
+    if (match != null) {
+      mediaList.addRowsWhere(searchTable, match);
+    } else {
+      mediaList.addRows(searchTable, 0, searchTable.size());
+    }
+    isFiltered = match != null;
+    hasMorePages = false;
+    isLoadingPage = false;
+    publishList();
+    prefetchSortOrders();
+  }
+
+  // The whole album plus its SearchIndex, built once per album load in the background
+  private void buildSearchIndex() {
+    if (searchIndexTask != null || getContext() == null) return;
+    final int token = loadToken;
+    final SortMode sortMode = searchTable != null ? searchSortMode : currentSortMode;
+    final CancellationSignal cancellation = loadCancellation;
+    final Context appContext = getContext().getApplicationContext();
+    // Fully loaded: the rows are already here (in sortMode order), only paged: read the rest once
+    final MediaTable source = searchTable != null ? searchTable : hasMorePages ? null : mediaList;
+    final MediaTable loaded = source == null ? null : new MediaTable(source.size());
+    if (loaded != null) {
+      loaded.addRows(source, 0, source.size());
+    }
+
+    // PREFETCH, not UI_CRITICAL: on a big album this runs for a while and must not hold up
+    // grid diffs, page loads and filter evaluation
+    searchIndexTask =
+        TaskScheduler.get()
+            .submit(
+                TaskScheduler.Lane.PREFETCH,
+                viewTasks,
+                () -> {
+                  MediaTable table = loaded;
+                  if (table == null) {
+                    MediaIndex index = MediaIndex.getInstance(appContext);
+                    table =
+                        index.isReady()
+                            ? index.loadMediaForAlbum(albumId, albumName, folderName, cancellation)
+                            : MediaStoreHelper.loadMediaForAlbum(
+                                appContext, albumId, albumName, folderName, cancellation);
+                    if (cancellation != null && cancellation.isCanceled()) return;
+                    int field = sortField(sortMode);
+                    table.setOrder(
+                        table.sortedOrder(ascendingOrder(table, field)), isDescending(sortMode));
+                  }
+                  final MediaTable album = table;
+                  final SearchIndex index = SearchIndex.build(album);
+
+                  if (getActivity() == null) return;
+                  getActivity()
+                      .runOnUiThread(
+                          () -> {
+                            if (token != loadToken) return;
+                            searchIndexTask = null;
+                            searchTable = album;
+                            searchIndex = index;
+                            searchSortMode = sortMode;
+                            lastMatch = null;
+                            showFilterResult();
+                          });
+                });
+  }
+
+  // The album finished loading: apply a filter that came in meanwhile
+  private void onLoadFinished() {
+    prefetchSortOrders();
+    if (isActive(currentFilter)) {
+      showFilterResult();
+    }
   }
 
   @Nullable
@@ -179,6 +437,8 @@ public class PhotosFragment extends Fragment {
     recyclerView.setHasFixedSize(true);
     adapter = new PhotosAdapter();
     recyclerView.setAdapter(adapter);
+    scrollPrefetcher = new ScrollPrefetcher();
+    recyclerView.addOnScrollListener(scrollPrefetcher);
 
     return view;
   }
@@ -187,6 +447,9 @@ public class PhotosFragment extends Fragment {
   public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
     super.onViewCreated(view, savedInstanceState);
 
+    viewTasks = TaskScheduler.Token.forLifecycle(getViewLifecycleOwner());
+    AnimatedImageClassifier.getInstance(requireContext()).addListener(animatedListener);
+
     sharedViewModel = new ViewModelProvider(requireActivity()).get(SharedViewModel.class);
     sharedViewModel
         .getFilter()
@@ -239,119 +502,523 @@ public class PhotosFragment extends Fragment {
   }
 
   public void loadAlbumPhotos() {
+    loadAlbumPhotos(true);
+  }
+
+  // syncIndex: catch the index up with MediaStore after loading from it, reloading if that
+  // changed anything (false for that reload)
+  private void loadAlbumPhotos(boolean syncIndex) {
     cancelAllLoading();
     // Don't clear the list immediately to avoid a "white flash"
     // We'll swap the data in one go on the UI thread.
+    final int token = ++loadToken;
+    scrollAfterPage = false;
+    final MediaStoreHelper.PageOrder pageOrder = pageOrderFor(currentSortMode);
+    final int firstCount = firstScreenCount();
+    final CancellationSignal cancellation = new CancellationSignal();
+    loadCancellation = cancellation;
+    isAppending = true;
+    final String[] snapshotKey = {albumId, albumName, folderName, currentSortMode.name()};
+    final TaskScheduler.Token tasks = viewTasks;
+
+    // Cold start: last run's first pages of this album now, the load below replaces them
+    if (mediaList.isEmpty() && adapter != null && getContext() != null) {
+      MediaTable snapshot =
+          SnapshotStore.getInstance(getContext())
+              .getAlbumPage(snapshotKey[0], snapshotKey[1], snapshotKey[2], snapshotKey[3]);
+      if (snapshot != null && !snapshot.isEmpty()) {
+        mediaList.addRows(snapshot, 0, snapshot.size());
+        publishList();
+      }
+    }
+
+    loadTask =
+        TaskScheduler.get()
+            .submit(
+                TaskScheduler.Lane.UI_CRITICAL,
+                viewTasks,
+                () -> {
+                  if (getContext() == null) return;
+                  Context appContext = getContext().getApplicationContext();
+
+                  // 1. Fetch data in background: from the local index when it's built,
+                  // otherwise straight from MediaStore
+                  MediaIndex index = MediaIndex.getInstance(appContext);
+                  boolean indexReady = index.isReady();
+                  if (indexReady && syncIndex) {
+                    // Show the index as it is right away, like the albums screen
+                    TaskScheduler.get()
+                        .submit(
+                            TaskScheduler.Lane.BACKGROUND,
+                            tasks,
+                            () -> {
+                              if (index.sync()) {
+                                reloadAfterSync(token);
+                              }
+                            });
+                  }
+
+                  if (pageOrder != null) {
+                    // The database can sort this order: one screen first so the grid
+                    // shows up right away, then a full page; the adapter asks for the
+                    // next ones while the user scrolls
+                    MediaTable firstScreen =
+                        loadPage(appContext, pageOrder, 0, firstCount, cancellation);
+                    if (cancellation.isCanceled()) return;
+                    boolean pageFollows = firstScreen.size() == firstCount;
+                    showFirstItems(token, firstScreen, firstCount, pageFollows);
+                    if (!pageFollows) {
+                      saveSnapshot(appContext, snapshotKey, firstScreen);
+                      return;
+                    }
 
-    imagesLoadingThread =
-        new Thread(
+                    MediaTable page =
+                        loadPage(appContext, pageOrder, firstCount, PAGE_SIZE, cancellation);
+                    if (cancellation.isCanceled()) return;
+                    appendItems(token, page, page.size() == PAGE_SIZE);
+
+                    MediaTable shown = new MediaTable(firstScreen.size() + page.size());
+                    shown.addRows(firstScreen, 0, firstScreen.size());
+                    shown.addRows(page, 0, page.size());
+                    saveSnapshot(appContext, snapshotKey, shown);
+                    return;
+                  }
+
+                  MediaTable combined;
+                  if (indexReady) {
+                    combined =
+                        index.loadMediaForAlbum(albumId, albumName, folderName, cancellation);
+                  } else {
+                    // Images and videos in one Files query, newest first
+                    combined =
+                        MediaStoreHelper.loadMediaForAlbum(
+                            appContext, albumId, albumName, folderName, cancellation);
+                  }
+
+                  if (cancellation.isCanceled()) return;
+
+                  // 2. Sort in background (paged results already come sorted)
+                  sortMediaList(combined);
+
+                  // 3. First screen now, the rest a chunk per frame
+                  showFirstItems(token, combined, firstCount, false);
+                  saveSnapshot(appContext, snapshotKey, combined);
+                });
+  }
+
+  // The index changed under the list loaded with this token: load it again
+  private void reloadAfterSync(int token) {
+    if (getActivity() == null) return;
+    getActivity()
+        .runOnUiThread(
             () -> {
-              // 1. Fetch data in background
-              List<MediaItems> images =
-                  MediaStoreHelper.loadImagesForAlbum(getContext(), albumId, albumName, folderName);
-              List<MediaItems> videos =
-                  MediaStoreHelper.loadVideosForAlbum(getContext(), albumId, albumName, folderName);
+              if (token == loadToken && getView() != null) {
+                loadAlbumPhotos(false);
+              }
+            });
+  }
 
-              List<MediaItems> combined = new ArrayList<>(images.size() + videos.size());
-              combined.addAll(images);
-              combined.addAll(videos);
+  // Keep the first pages for the next cold start (key: album id, name, folder, sort mode);
+  // items must not change afterwards
+  private static void saveSnapshot(Context appContext, String[] key, MediaTable items) {
+    TaskScheduler.get()
+        .submit(
+            TaskScheduler.Lane.BACKGROUND,
+            null,
+            () ->
+                SnapshotStore.getInstance(appContext)
+                    .saveAlbumPage(key[0], key[1], key[2], key[3], items));
+  }
 
-              if (Thread.interrupted()) return;
+  // Roughly one screen of cells at the current span count
+  private int firstScreenCount() {
+    int span = Math.max(1, currentSpanCount);
+    int rows = FIRST_SCREEN_ROWS;
+    if (isGridView && recyclerView != null && recyclerView.getWidth() > 0) {
+      int cellSize = Math.max(1, recyclerView.getWidth() / span);
+      rows = recyclerView.getHeight() / cellSize + 1;
+    }
+    return span * Math.max(1, rows);
+  }
 
-              // 2. Sort in background
-              sortMediaList(combined);
+  // Swap in the first items (one go, no "white flash"), then feed the rest in chunks
+  private void showFirstItems(
+      int token, MediaTable items, int firstCount, boolean pageFollows) {
+    if (getActivity() == null) return;
+    getActivity()
+        .runOnUiThread(
+            () -> {
+              if (token != loadToken) return;
+
+              int first = Math.min(firstCount, items.size());
+              mediaList.clear();
+              mediaList.addRows(items, 0, first);
+              hasMorePages = false;
+              isLoadingPage = true; // the rest is on its way
+              publishList();
+
+              // Teleport to position immediately after data is bound
+              // scrollToLastViewedIfApplicable();
+
+              if (first < items.size()) {
+                appendChunk(token, items, first);
+              } else if (!pageFollows) {
+                isAppending = false;
+                isLoadingPage = false;
+                onLoadFinished();
+              }
+            });
+  }
 
-              if (getActivity() != null) {
-                getActivity()
-                    .runOnUiThread(
-                        () -> {
-                          mediaList.clear();
-                          mediaList.addAll(combined);
-                          adapter.notifyDataSetChanged();
+  // One chunk per frame so a 20k list never blocks the UI thread in one go
+  private void appendChunk(int token, MediaTable items, int from) {
+    if (token != loadToken || recyclerView == null) return;
 
-                          // 3. Teleport to position immediately after
-                          // data is bound
-                          // scrollToLastViewedIfApplicable();
+    int to = Math.min(from + APPEND_CHUNK_SIZE, items.size());
+    mediaList.addRows(items, from, to);
+    publishAppended(items, from, to);
 
-                          isLoadingImages = false;
-                          isLoadingVideos = false;
-                        });
+    if (to < items.size()) {
+      recyclerView.post(() -> appendChunk(token, items, to));
+    } else {
+      isAppending = false;
+      isLoadingPage = false;
+      onLoadFinished();
+    }
+  }
+
+  // Append a page fetched in the background after the first screen
+  private void appendItems(int token, MediaTable page, boolean morePages) {
+    if (getActivity() == null) return;
+    getActivity()
+        .runOnUiThread(
+            () -> {
+              if (token != loadToken) return;
+
+              if (!page.isEmpty()) {
+                mediaList.addRows(page, 0, page.size());
+                publishAppended(page, 0, page.size());
               }
+              isAppending = false;
+              isLoadingPage = false;
+              hasMorePages = morePages;
+              onLoadFinished();
+              resumeScrollAfterPage();
             });
-    imagesLoadingThread.start();
   }
 
-  private void cancelAllLoading() {
-    if (imagesLoadingThread != null && imagesLoadingThread.isAlive()) {
-      imagesLoadingThread.interrupt();
-      imagesLoadingThread = null;
+  // Bring shownList up to mediaList: diffed in the background, so a re-sort, filter or deletion
+  // only touches the positions that changed instead of rebinding (and reloading) every cell
+  private void publishList() {
+    final int generation = ++publishGeneration;
+    if (diffTask != null) {
+      diffTask.cancel();
+      diffTask = null;
+    }
+    final MediaTable oldList = shownList;
+    final MediaTable newList = new MediaTable(mediaList.size());
+    newList.addRows(mediaList, 0, mediaList.size());
+    final int version = mediaList.version();
+    if (adapter == null) {
+      shownList = newList;
+      return;
     }
-    if (videosLoadingThread != null && videosLoadingThread.isAlive()) {
-      videosLoadingThread.interrupt();
-      videosLoadingThread = null;
+    if (oldList.isEmpty() || newList.isEmpty()) {
+      shownList = newList; // nothing on screen worth keeping
+      adapter.notifyDataSetChanged();
+      return;
     }
-    isLoadingImages = false;
-    isLoadingVideos = false;
+
+    diffTask =
+        TaskScheduler.get()
+            .submit(
+                TaskScheduler.Lane.UI_CRITICAL,
+                viewTasks,
+                () -> {
+                  GridDiff diff = GridDiff.calculate(oldList, newList);
+                  if (Thread.currentThread().isInterrupted() || getActivity() == null) return;
+                  getActivity()
+                      .runOnUiThread(
+                          () -> {
+                            if (generation != publishGeneration) return;
+                            diffTask = null;
+                            shownList = newList;
+                            diff.dispatchUpdatesTo(adapter);
+                            // Rows appended while the diff was running
+                            if (mediaList.version() != version) {
+                              publishList();
+                            }
+                          });
+                });
   }
 
-  public void setAlbumData(String albumId, String albumName, String folderName) {
-    this.albumId = albumId;
-    this.albumName = albumName;
-    this.folderName = folderName;
+  // Rows from..to of source were just added to the end of mediaList
+  private void publishAppended(MediaTable source, int from, int to) {
+    if (diffTask != null) return; // publishList() catches up when its diff lands
+    if (shownList.isEmpty()) {
+      publishList();
+      return;
+    }
+    int start = shownList.size();
+    shownList.addRows(source, from, to);
+    // +1 for the header at position 0
+    adapter.notifyItemRangeInserted(start + 1, to - from);
+  }
 
-    if (albumTitle != null) {
-      albumTitle.setText(albumName);
+  /**
+   * An item was deleted (in the viewer): drop it from the grid instead of reloading the album.
+   */
+  public void removeMedia(Uri uri) {
+    int position = mediaList.indexOfUri(uri);
+    if (position >= 0) {
+      mediaList.remove(position);
+      publishList();
     }
-    loadAlbumPhotos();
+    if (searchTable != null) {
+      int searchPosition = searchTable.indexOfUri(uri);
+      if (searchPosition >= 0) {
+        searchTable.remove(searchPosition);
+        // Row numbers moved, index the table again on the next filter change
+        searchIndex = null;
+        lastMatch = null;
+      }
+    }
+    if (searchIndexTask != null) {
+      searchIndexTask.cancel(); // was indexing the album with the item still in it
+      searchIndexTask = null;
+    }
+    prefetchSortOrders(); // the cached orders were for the list with the item still in it
   }
 
-  private static final Comparator<MediaItems> NATURAL_NAME_COMPARATOR =
-      (a, b) -> {
-        if (a.name == null) return -1;
-        if (b.name == null) return 1;
+  /**
+   * Changes between two lists of the grid, by MediaStore id. The common head and tail are
+   * skipped first; DiffUtil only runs on what's left in between, and only up to
+   * MAX_DIFF_WINDOW items (Myers is O(n * d), a re-sort of a 20k album changes nearly every
+   * position). Past that the whole grid is rebound, the stable ids keep the views that stay.
+   */
+  private static final class GridDiff {
+    private static final int MAX_DIFF_WINDOW = 4000;
+
+    private final int head; // positions before this are the same in both lists
+    @Nullable private final DiffUtil.DiffResult result; // null: rebind everything
+    private final boolean firstChanged;
+
+    private GridDiff(int head, @Nullable DiffUtil.DiffResult result, boolean firstChanged) {
+      this.head = head;
+      this.result = result;
+      this.firstChanged = firstChanged;
+    }
 
-        String s1 = a.name;
-        String s2 = b.name;
+    static GridDiff calculate(MediaTable oldList, MediaTable newList) {
+      int oldSize = oldList.size();
+      int newSize = newList.size();
+      int head = 0;
+      while (head < oldSize && head < newSize && sameContent(oldList, head, newList, head)) {
+        head++;
+      }
+      int tail = 0;
+      while (tail < oldSize - head
+          && tail < newSize - head
+          && sameContent(oldList, oldSize - 1 - tail, newList, newSize - 1 - tail)) {
+        tail++;
+      }
+      boolean firstChanged = head == 0;
+      int oldWindow = oldSize - head - tail;
+      int newWindow = newSize - head - tail;
+      if (oldWindow == 0 && newWindow == 0) {
+        return new GridDiff(head, null, false);
+      }
+      if (Math.max(oldWindow, newWindow) > MAX_DIFF_WINDOW) {
+        return new GridDiff(-1, null, true);
+      }
 
-        int len1 = s1.length();
-        int len2 = s2.length();
-        int i = 0, j = 0;
+      final int start = head;
+      DiffUtil.DiffResult result =
+          DiffUtil.calculateDiff(
+              new DiffUtil.Callback() {
+                @Override
+                public int getOldListSize() {
+                  return oldWindow;
+                }
 
-        while (i < len1 && j < len2) {
-          char c1 = s1.charAt(i);
-          char c2 = s2.charAt(j);
+                @Override
+                public int getNewListSize() {
+                  return newWindow;
+                }
 
-          if (Character.isDigit(c1) && Character.isDigit(c2)) {
-            while (i < len1 && s1.charAt(i) == '0') i++;
-            while (j < len2 && s2.charAt(j) == '0') j++;
+                @Override
+                public boolean areItemsTheSame(int oldPosition, int newPosition) {
+                  return oldList.idAt(oldList.row(start + oldPosition))
+                      == newList.idAt(newList.row(start + newPosition));
+                }
 
-            int numStart1 = i;
-            int numStart2 = j;
-            while (i < len1 && Character.isDigit(s1.charAt(i))) i++;
-            while (j < len2 && Character.isDigit(s2.charAt(j))) j++;
+                @Override
+                public boolean areContentsTheSame(int oldPosition, int newPosition) {
+                  return sameContent(oldList, start + oldPosition, newList, start + newPosition);
+                }
+              },
+              false);
+      return new GridDiff(head, result, firstChanged);
+    }
 
-            String numStr1 = s1.substring(numStart1, i);
-            String numStr2 = s2.substring(numStart2, j);
+    // Same item, drawn the same way
+    private static boolean sameContent(MediaTable a, int positionA, MediaTable b, int positionB) {
+      int rowA = a.row(positionA);
+      int rowB = b.row(positionB);
+      return a.idAt(rowA) == b.idAt(rowB)
+          && a.typeAt(rowA) == b.typeAt(rowB)
+          && a.dateAt(rowA) == b.dateAt(rowB)
+          && a.sizeAt(rowA) == b.sizeAt(rowB)
+          && Objects.equals(a.nameAt(rowA), b.nameAt(rowB));
+    }
 
-            BigInteger num1 = numStr1.isEmpty() ? BigInteger.ZERO : new BigInteger(numStr1);
-            BigInteger num2 = numStr2.isEmpty() ? BigInteger.ZERO : new BigInteger(numStr2);
+    void dispatchUpdatesTo(RecyclerView.Adapter<?> adapter) {
+      if (head < 0) {
+        adapter.notifyDataSetChanged();
+        return;
+      }
+      if (result != null) {
+        // Window positions -> adapter positions: the skipped head, plus 1 for the header
+        final int offset = head + 1;
+        result.dispatchUpdatesTo(
+            new ListUpdateCallback() {
+              @Override
+              public void onInserted(int position, int count) {
+                adapter.notifyItemRangeInserted(position + offset, count);
+              }
 
-            int cmp = num1.compareTo(num2);
-            if (cmp != 0) return cmp;
+              @Override
+              public void onRemoved(int position, int count) {
+                adapter.notifyItemRangeRemoved(position + offset, count);
+              }
 
-            if (numStr1.length() != numStr2.length()) {
-              return Integer.compare(numStr2.length(), numStr1.length());
-            }
-          } else {
-            int cmp = Character.toLowerCase(c1) - Character.toLowerCase(c2);
-            if (cmp != 0) return cmp;
-            i++;
-            j++;
-          }
-        }
+              @Override
+              public void onMoved(int fromPosition, int toPosition) {
+                adapter.notifyItemMoved(fromPosition + offset, toPosition + offset);
+              }
 
-        return Integer.compare(len1, len2);
-      };
+              @Override
+              public void onChanged(int position, int count, @Nullable Object payload) {
+                adapter.notifyItemRangeChanged(position + offset, count, payload);
+              }
+            });
+      }
+      if (firstChanged) {
+        adapter.notifyItemChanged(0); // the header shows the first item
+      }
+    }
+  }
+
+  // Fetch the next page once binding gets close to the end of what's loaded
+  private void loadNextPage() {
+    MediaStoreHelper.PageOrder pageOrder = pageOrderFor(currentSortMode);
+    if (!hasMorePages || isLoadingPage || pageOrder == null || getContext() == null) return;
+    // Pages belong to the current load and die with it
+    final CancellationSignal cancellation = loadCancellation;
+    if (cancellation == null) return;
+
+    isLoadingPage = true;
+    final int token = loadToken;
+    final int offset = mediaList.size();
+    Context appContext = getContext().getApplicationContext();
+
+    TaskScheduler.get()
+        .submit(
+            TaskScheduler.Lane.UI_CRITICAL,
+            viewTasks,
+            () -> {
+              MediaTable page = loadPage(appContext, pageOrder, offset, PAGE_SIZE, cancellation);
+              if (cancellation.isCanceled()) return;
+
+              if (getActivity() != null) {
+                getActivity()
+                    .runOnUiThread(
+                        () -> {
+                          if (token != loadToken) return;
+
+                          isLoadingPage = false;
+                          hasMorePages = page.size() == PAGE_SIZE;
+                          if (!page.isEmpty()) {
+                            mediaList.addRows(page, 0, page.size());
+                            publishAppended(page, 0, page.size());
+                          }
+                          prefetchSortOrders();
+                          resumeScrollAfterPage();
+                        });
+              }
+            });
+  }
+
+  private MediaTable loadPage(
+      Context appContext,
+      MediaStoreHelper.PageOrder pageOrder,
+      int offset,
+      int limit,
+      CancellationSignal cancellation) {
+    return MediaIndex.loadAlbumPage(
+        appContext, albumId, albumName, folderName, pageOrder, limit, offset, cancellation);
+  }
+
+  // Sort modes the database can page through; natural name order has to be sorted in memory
+  @Nullable
+  private static MediaStoreHelper.PageOrder pageOrderFor(SortMode mode) {
+    switch (mode) {
+      case DATE_DESC:
+        return MediaStoreHelper.PageOrder.DATE_DESC;
+      case DATE_ASC:
+        return MediaStoreHelper.PageOrder.DATE_ASC;
+      case SIZE_DESC:
+        return MediaStoreHelper.PageOrder.SIZE_DESC;
+      case SIZE_ASC:
+        return MediaStoreHelper.PageOrder.SIZE_ASC;
+      default:
+        return null;
+    }
+  }
+
+  private void cancelAllLoading() {
+    if (loadCancellation != null) {
+      loadCancellation.cancel();
+      loadCancellation = null;
+    }
+    if (loadTask != null) {
+      loadTask.cancel();
+      loadTask = null;
+    }
+    isLoadingPage = false;
+    isAppending = false;
+    if (sortOrdersTask != null) {
+      sortOrdersTask.cancel();
+      sortOrdersTask = null;
+    }
+    if (sortTask != null) {
+      sortTask.cancel();
+      sortTask = null;
+    }
+    if (searchIndexTask != null) {
+      searchIndexTask.cancel();
+      searchIndexTask = null;
+    }
+    if (filterTask != null) {
+      filterTask.cancel();
+      filterTask = null;
+    }
+    searchTable = null;
+    searchIndex = null;
+    lastMatch = null;
+    isFiltered = false;
+  }
+
+  public void setAlbumData(String albumId, String albumName, String folderName) {
+    this.albumId = albumId;
+    this.albumName = albumName;
+    this.folderName = folderName;
+
+    if (albumTitle != null) {
+      albumTitle.setText(albumName);
+    }
+    loadAlbumPhotos();
+  }
 
   private enum SortMode {
     NAME_ASC,
@@ -363,53 +1030,150 @@ public class PhotosFragment extends Fragment {
   }
 
   // Helper to handle background sorting for 21k items
-  private void sortMediaList(List<MediaItems> list) {
+  private void sortMediaList(MediaTable list) {
     if (list == null || list.isEmpty()) return;
-    switch (currentSortMode) {
+    int field = sortField(currentSortMode);
+    list.setOrder(list.sortedOrder(ascendingOrder(list, field)), isDescending(currentSortMode));
+  }
+
+  // NAME, DATE, SIZE: one cached order each, DESC reads the ASC one backwards
+  private static int sortField(SortMode mode) {
+    switch (mode) {
       case NAME_ASC:
-        list.sort(NATURAL_NAME_COMPARATOR);
-        break;
       case NAME_DESC:
-        list.sort(NATURAL_NAME_COMPARATOR.reversed());
-        break;
-      case DATE_DESC:
-        list.sort((a, b) -> Long.compare(b.dateModified, a.dateModified));
-        break;
+        return 0;
       case DATE_ASC:
-        list.sort((a, b) -> Long.compare(a.dateModified, b.dateModified));
-        break;
-      case SIZE_DESC:
-        list.sort((a, b) -> Long.compare(b.size, a.size));
-        break;
-      case SIZE_ASC:
-        list.sort((a, b) -> Long.compare(a.size, b.size));
-        break;
+      case DATE_DESC:
+        return 1;
+      default:
+        return 2;
     }
   }
 
+  private static boolean isDescending(SortMode mode) {
+    return mode == SortMode.NAME_DESC || mode == SortMode.DATE_DESC || mode == SortMode.SIZE_DESC;
+  }
+
+  // Row comparators over the table's columns: no boxing, no MediaItems
+  private static MediaTable.RowComparator ascendingOrder(MediaTable list, int field) {
+    switch (field) {
+      case 0:
+        return list::compareNames;
+      case 1:
+        return (a, b) -> Long.compare(list.dateAt(a), list.dateAt(b));
+      default:
+        return (a, b) -> Long.compare(list.sizeAt(a), list.sizeAt(b));
+    }
+  }
+
+  // Drop cached orders built for an older version of the list
+  private void checkSortOrders() {
+    if (sortOrdersVersion != mediaList.version()) {
+      Arrays.fill(sortOrders, null);
+      sortOrdersVersion = mediaList.version();
+    }
+  }
+
+  // Once the whole album is in memory, sort it by every field in the background
+  private void prefetchSortOrders() {
+    if (hasMorePages || isAppending || mediaList.isEmpty() || getActivity() == null) return;
+    checkSortOrders();
+
+    final MediaTable list = mediaList;
+    final int version = list.version();
+    final boolean[] missing = new boolean[sortOrders.length];
+    boolean any = false;
+    for (int field = 0; field < sortOrders.length; field++) {
+      missing[field] = sortOrders[field] == null;
+      any |= missing[field];
+    }
+    if (!any) return;
+
+    if (sortOrdersTask != null) {
+      sortOrdersTask.cancel();
+    }
+    sortOrdersTask =
+        TaskScheduler.get()
+            .submit(
+                TaskScheduler.Lane.PREFETCH,
+                viewTasks,
+                () -> {
+                  for (int field = 0; field < missing.length; field++) {
+                    if (!missing[field]) continue;
+                    if (Thread.interrupted() || list.version() != version) return;
+
+                    final int sortedField = field;
+                    final int[] order = list.sortedOrder(ascendingOrder(list, field));
+                    if (getActivity() == null) return;
+                    getActivity()
+                        .runOnUiThread(
+                            () -> {
+                              // Only keep it if the list didn't change meanwhile
+                              if (list != mediaList || list.version() != version) return;
+                              checkSortOrders();
+                              if (sortOrders[sortedField] == null) {
+                                sortOrders[sortedField] = order;
+                              }
+                            });
+                  }
+                });
+  }
+
   private void applySort() {
     if (mediaList == null || mediaList.isEmpty()) return;
-    switch (currentSortMode) {
-      case NAME_ASC:
-        mediaList.sort(NATURAL_NAME_COMPARATOR);
-        break;
-      case NAME_DESC:
-        mediaList.sort(NATURAL_NAME_COMPARATOR.reversed());
-        break;
-      case DATE_DESC:
-        mediaList.sort((a, b) -> Long.compare(b.dateModified, a.dateModified));
-        break;
-      case DATE_ASC:
-        mediaList.sort((a, b) -> Long.compare(a.dateModified, b.dateModified));
-        break;
-      case SIZE_DESC:
-        mediaList.sort((a, b) -> Long.compare(b.size, a.size));
-        break;
-      case SIZE_ASC:
-        mediaList.sort((a, b) -> Long.compare(a.size, b.size));
-        break;
+
+    if (hasMorePages || isAppending) {
+      // Only part of the album is in memory: reload so the database sorts it
+      // (or the whole album is loaded for name order)
+      saveSortMode();
+      loadAlbumPhotos();
+      return;
+    }
+
+    saveSortMode();
+
+    // O(1) when the order was built in the background, otherwise build it there now
+    checkSortOrders();
+    final int field = sortField(currentSortMode);
+    if (sortOrders[field] != null) {
+      mediaList.setOrder(sortOrders[field], isDescending(currentSortMode));
+      publishList();
+      return;
     }
 
+    final MediaTable list = mediaList;
+    final int version = list.version();
+    final SortMode sortMode = currentSortMode;
+    if (sortTask != null) {
+      sortTask.cancel();
+    }
+    sortTask =
+        TaskScheduler.get()
+            .submit(
+                TaskScheduler.Lane.UI_CRITICAL,
+                viewTasks,
+                () -> {
+                  final int[] order = list.sortedOrder(ascendingOrder(list, field));
+                  if (getActivity() == null) return;
+                  getActivity()
+                      .runOnUiThread(
+                          () -> {
+                            sortTask = null;
+                            if (sortMode != currentSortMode) return; // another sort came after
+                            if (list != mediaList || list.version() != version) {
+                              // Changed meanwhile (e.g. a deletion): sort what's there now
+                              if (!hasMorePages && !isAppending) applySort();
+                              return;
+                            }
+                            checkSortOrders();
+                            sortOrders[field] = order;
+                            list.setOrder(order, isDescending(sortMode));
+                            publishList();
+                          });
+                });
+  }
+
+  private void saveSortMode() {
     try {
       if (MainActivity.prefs != null) {
         MainActivity.prefs.edit().putString(PREF_KEY_SORT_MODE, currentSortMode.name()).apply();
@@ -422,12 +1186,10 @@ public class PhotosFragment extends Fragment {
       }
     } catch (Exception ignored) {
     }
-
-    adapter.notifyDataSetChanged();
   }
 
   private void scrollToLastViewedIfApplicable() {
-    if (recyclerView == null || mediaList == null || mediaList.isEmpty()) return;
+    if (recyclerView == null || shownList.isEmpty()) return;
     if (MainActivity.prefs == null) return;
 
     String savedUri = MainActivity.prefs.getString(PREF_KEY_LAST_URI, null);
@@ -435,16 +1197,17 @@ public class PhotosFragment extends Fragment {
 
     int matchPos = -1;
     if (savedUri != null) {
-      for (int i = 0; i < mediaList.size(); i++) {
-        if (savedUri.equals(mediaList.get(i).uri.toString())) {
-          matchPos = i;
-          break;
-        }
-      }
+      matchPos = shownList.indexOfUri(Uri.parse(savedUri));
+    }
+    if (matchPos < 0 && hasMorePages) {
+      // Not loaded yet: page on until it turns up (or the index fallback can be used)
+      scrollAfterPage = true;
+      loadNextPage();
+      return;
     }
 
     // Fallback to index if URI doesn't match
-    if (matchPos < 0 && savedIndex >= 0 && savedIndex < mediaList.size()) {
+    if (matchPos < 0 && savedIndex >= 0 && savedIndex < shownList.size()) {
       matchPos = savedIndex;
     }
 
@@ -466,6 +1229,26 @@ public class PhotosFragment extends Fragment {
         });
   }
 
+  private void resumeScrollAfterPage() {
+    if (!scrollAfterPage) return;
+    scrollAfterPage = false;
+    scrollToLastViewedIfApplicable();
+  }
+
+  // The viewer's list: what the grid shows, plus where its next pages come from while only part
+  // of the album is loaded, so swiping and the slideshow don't stop at the last loaded page
+  private int openViewerSession(Context context) {
+    MediaSessionRepository sessions = MediaSessionRepository.getInstance(context);
+    MediaStoreHelper.PageOrder pageOrder = pageOrderFor(currentSortMode);
+    if (!hasMorePages || pageOrder == null) {
+      return sessions.open(shownList);
+    }
+    return sessions.open(
+        shownList,
+        new MediaSessionRepository.AlbumPages(albumId, albumName, folderName, pageOrder),
+        shownList.size());
+  }
+
   private void showSortPopup(View anchor) {
     if (getContext() == null) return;
 
@@ -661,6 +1444,11 @@ public class PhotosFragment extends Fragment {
   private class PhotosAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
     private static final int TYPE_HEADER = 0;
     private static final int TYPE_MEDIA = 1;
+    private static final long HEADER_ID = -1L;
+
+    PhotosAdapter() {
+      setHasStableIds(true);
+    }
 
     @Override
     public int getItemViewType(int position) {
@@ -669,7 +1457,13 @@ public class PhotosFragment extends Fragment {
 
     @Override
     public int getItemCount() {
-      return mediaList.isEmpty() ? 0 : mediaList.size() + 1;
+      return shownList.isEmpty() ? 0 : shownList.size() + 1;
+    }
+
+    @Override
+    public long getItemId(int position) {
+      // MediaStore ids are >= 0, so the header can't collide with one
+      return position == 0 ? HEADER_ID : shownList.idAt(shownList.row(position - 1));
     }
 
     @NonNull
@@ -692,17 +1486,21 @@ public class PhotosFragment extends Fragment {
     public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
       if (holder instanceof HeaderViewHolder) {
         // Bind first image to header
-        if (!mediaList.isEmpty()) {
-          MediaItems firstItem = mediaList.get(0);
+        if (!shownList.isEmpty()) {
+          MediaItems firstItem = shownList.get(0);
           ((HeaderViewHolder) holder).bind(firstItem);
         }
       } else {
         // Media items start from position 1
         int mediaPosition = position - 1;
-        if (mediaPosition < mediaList.size()) {
-          MediaItems item = mediaList.get(mediaPosition);
+        if (mediaPosition < shownList.size()) {
+          MediaItems item = shownList.get(mediaPosition);
           ((MediaViewHolder) holder).bind(item);
         }
+
+        if (hasMorePages && mediaPosition >= shownList.size() - PAGE_PREFETCH_DISTANCE) {
+          loadNextPage();
+        }
       }
     }
 
@@ -769,8 +1567,9 @@ public class PhotosFragment extends Fragment {
 
               ViewerFragment viewerFragment = new ViewerFragment();
               Bundle args = new Bundle();
-              ArrayList<MediaItems> parcelableList = new ArrayList<>(mediaList);
-              args.putParcelableArrayList("media_items", parcelableList);
+              // The list goes by session id, not as a Parcelable copy in the arguments
+              int sessionId = openViewerSession(v.getContext());
+              args.putInt(MediaSessionRepository.ARG_SESSION_ID, sessionId);
               args.putInt("current_index", mediaIndex); // Use actual index
               args.putBoolean("user_picked", true);
               viewerFragment.setArguments(args);
@@ -845,18 +1644,186 @@ public class PhotosFragment extends Fragment {
         }
 
         // Load thumbnail
-        Glide.with(itemView.getContext())
-            .load(item.uri)
-            .centerCrop()
-            .thumbnail(0.1f) // Load a 20% tiny version first
-            .override(240, 240) // Don't decode larger than needed for the grid
-            .diskCacheStrategy(DiskCacheStrategy.RESOURCE)
-            .encodeQuality(70) // Cache only the resized version
+        int tier = thumbTier();
+        long key = thumbKey(item, tier);
+        RequestBuilder<Drawable> request = gridRequest(Glide.with(PhotosFragment.this), item, tier);
+        if (!isThumbCached(item, tier)) {
+          request = request.thumbnail(0.1f); // Load a tiny version first
+        }
+        request
+            .addListener(
+                new RequestListener<Drawable>() {
+                  @Override
+                  public boolean onLoadFailed(
+                      @Nullable GlideException e,
+                      Object model,
+                      Target<Drawable> target,
+                      boolean isFirstResource) {
+                    return false;
+                  }
+
+                  @Override
+                  public boolean onResourceReady(
+                      Drawable resource,
+                      Object model,
+                      Target<Drawable> target,
+                      DataSource dataSource,
+                      boolean isFirstResource) {
+                    recentThumbs.put(key, Boolean.TRUE);
+                    return false;
+                  }
+                })
             .into(thumbnail);
       }
     }
   }
 
+  // The thumbnail request of a cell; ScrollPrefetcher preloads this exact request (same size and
+  // options, so the same cache key). The packed tile store / platform's cached thumbnail, except
+  // for GIFs that animate in the grid. Those keep Glide's disk cache, the store replaces it for
+  // the rest.
+  private static RequestBuilder<Drawable> gridRequest(
+      RequestManager glide, MediaItems item, int tier) {
+    boolean platformThumbnail = !item.isAnimated();
+    return glide
+        .load(item.uri)
+        .set(MediaThumbnailLoader.PLATFORM_THUMBNAIL, platformThumbnail)
+        .set(MediaThumbnailLoader.DATE_MODIFIED, item.dateModified)
+        .centerCrop()
+        .override(tier, tier) // Don't decode larger than the cell
+        .diskCacheStrategy(platformThumbnail ? DiskCacheStrategy.NONE : DiskCacheStrategy.RESOURCE)
+        .encodeQuality(70); // Cache only the resized version
+  }
+
+  // Smallest tier covering a cell at the current span / layout, so tiles are never upscaled
+  private int thumbTier() {
+    DisplayMetrics metrics = getResources().getDisplayMetrics();
+    int cell;
+    if (isGridView) {
+      int width =
+          recyclerView != null && recyclerView.getWidth() > 0
+              ? recyclerView.getWidth()
+              : metrics.widthPixels;
+      cell = width / Math.max(1, currentSpanCount);
+    } else {
+      cell = Math.round(LIST_THUMB_DP * metrics.density);
+    }
+    for (int tier : THUMB_TIERS) {
+      if (tier >= cell) return tier;
+    }
+    return THUMB_TIERS[THUMB_TIERS.length - 1];
+  }
+
+  private static long thumbKey(MediaItems item, int tier) {
+    long id;
+    try {
+      id = Long.parseLong(item.id);
+    } catch (NumberFormatException e) {
+      id = item.uri.hashCode();
+    }
+    return id * THUMB_TIERS.length + Arrays.binarySearch(THUMB_TIERS, tier);
+  }
+
+  // Whether the tier will come straight from a cache, then the 0.1 pass would only add a decode
+  private boolean isThumbCached(MediaItems item, int tier) {
+    if (recentThumbs.get(thumbKey(item, tier)) != null) return true;
+    if (item.isAnimated() || tier > ThumbnailStore.TILE_SIZE || getContext() == null) return false;
+    try {
+      return ThumbnailStore.getInstance(getContext())
+          .contains(Long.parseLong(item.id), item.dateModified);
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Loads the cells the scroll is heading for before they're bound, more rows the faster it goes,
+   * and holds the grid's Glide requests back during hard flings: tiles that fly by would only be
+   * decoded to be dropped. Requests resume (visible cells first) once the scroll slows down.
+   */
+  private class ScrollPrefetcher extends RecyclerView.OnScrollListener {
+    private static final float PAUSE_VELOCITY = 6f; // px/ms, a hard fling
+    private static final float RESUME_VELOCITY = 2f;
+    private static final long PREFETCH_AHEAD_MS = 400; // load what the scroll reaches by then
+    private static final int MIN_PREFETCH_ROWS = 2;
+    private static final int MAX_PREFETCH_ROWS = 12;
+
+    private float velocity; // px/ms, smoothed
+    private long lastScrollTime;
+    private boolean paused;
+    // Adapter positions already preloaded, [from, to)
+    private int prefetchedFrom = 0;
+    private int prefetchedTo = 0;
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView rv, int dx, int dy) {
+      long now = SystemClock.uptimeMillis();
+      long elapsed = now - lastScrollTime;
+      lastScrollTime = now;
+      if (elapsed > 100) velocity = 0; // a new gesture
+      velocity = velocity * 0.6f + Math.abs(dy) / (float) Math.max(1, elapsed) * 0.4f;
+
+      if (!paused && velocity > PAUSE_VELOCITY) {
+        paused = true;
+        Glide.with(PhotosFragment.this).pauseRequests();
+      } else if (paused && velocity < RESUME_VELOCITY) {
+        resume();
+      }
+      if (!paused && dy != 0) {
+        prefetch(rv, dy > 0);
+      }
+    }
+
+    @Override
+    public void onScrollStateChanged(@NonNull RecyclerView rv, int newState) {
+      if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+        velocity = 0;
+        resume();
+      } else if (newState == RecyclerView.SCROLL_STATE_DRAGGING) {
+        // A new gesture, and the list may have changed since the last one
+        prefetchedFrom = 0;
+        prefetchedTo = 0;
+      }
+    }
+
+    void resume() {
+      if (!paused) return;
+      paused = false;
+      Glide.with(PhotosFragment.this).resumeRequests();
+    }
+
+    private void prefetch(RecyclerView rv, boolean down) {
+      if (!(rv.getLayoutManager() instanceof GridLayoutManager) || rv.getChildCount() == 0) return;
+      GridLayoutManager lm = (GridLayoutManager) rv.getLayoutManager();
+      int span = lm.getSpanCount();
+      int cellHeight = Math.max(1, rv.getChildAt(rv.getChildCount() - 1).getHeight());
+      int rows = (int) Math.ceil(velocity * PREFETCH_AHEAD_MS / cellHeight);
+      int count = Math.max(MIN_PREFETCH_ROWS, Math.min(MAX_PREFETCH_ROWS, rows)) * span;
+
+      int from;
+      int to;
+      if (down) {
+        from = lm.findLastVisibleItemPosition() + 1;
+        to = from + count;
+      } else {
+        to = lm.findFirstVisibleItemPosition();
+        from = to - count;
+      }
+      from = Math.max(from, 1); // +1 for the header
+      to = Math.min(to, shownList.size() + 1);
+      if (from >= to || (from >= prefetchedFrom && to <= prefetchedTo)) return;
+
+      RequestManager glide = Glide.with(PhotosFragment.this);
+      int tier = thumbTier();
+      for (int position = from; position < to; position++) {
+        if (position >= prefetchedFrom && position < prefetchedTo) continue;
+        gridRequest(glide, shownList.get(position - 1), tier).preload();
+      }
+      prefetchedFrom = from;
+      prefetchedTo = to;
+    }
+  }
+
   private String formatDate(long timestamp) {
     java.util.Date date = new java.util.Date(timestamp * 1000);
     java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("MMM dd, yyyy");
@@ -876,6 +1843,25 @@ public class PhotosFragment extends Fragment {
     return String.format("%.1f %sB", bytes / Math.pow(1024, exp), pre);
   }
 
+  @Override
+  public void onDestroyView() {
+    super.onDestroyView();
+    if (getContext() != null) {
+      AnimatedImageClassifier.getInstance(getContext()).removeListener(animatedListener);
+    }
+    if (scrollPrefetcher != null) {
+      scrollPrefetcher.resume(); // the next view mustn't start with Glide paused
+      scrollPrefetcher = null;
+    }
+    // Their token died with the view, they'll never call back
+    searchIndexTask = null;
+    filterTask = null;
+    diffTask = null;
+    ++publishGeneration;
+    shownList = new MediaTable(mediaList.size());
+    shownList.addRows(mediaList, 0, mediaList.size());
+  }
+
   @Override
   public void onResume() {
     super.onResume();
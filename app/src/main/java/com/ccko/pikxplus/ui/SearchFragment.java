@@ -58,7 +58,10 @@ public class SearchFragment extends Fragment {
 
   private final Handler handler = new Handler();
   private Runnable debounceRunnable;
-  private static final long DEBOUNCE_MS = 300L;
+  // Wait about as long as a filter takes to evaluate: cheap filters follow the typing,
+  // expensive ones don't get started for every keystroke
+  private static final long MIN_DEBOUNCE_MS = 50L;
+  private static final long MAX_DEBOUNCE_MS = 300L;
 
   @Nullable
   @Override
@@ -161,7 +164,13 @@ public class SearchFragment extends Fragment {
   private void emitFilterDebounced() {
     if (debounceRunnable != null) handler.removeCallbacks(debounceRunnable);
     debounceRunnable = this::emitFilterImmediate;
-    handler.postDelayed(debounceRunnable, DEBOUNCE_MS);
+    handler.postDelayed(debounceRunnable, debounceDelay());
+  }
+
+  private long debounceDelay() {
+    long cost = sharedViewModel != null ? sharedViewModel.getFilterCost() : -1;
+    if (cost < 0) return MAX_DEBOUNCE_MS; // nothing measured yet
+    return Math.max(MIN_DEBOUNCE_MS, Math.min(MAX_DEBOUNCE_MS, 2 * cost));
   }
 
   private void emitFilterImmediate() {
@@ -31,6 +31,7 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.ccko.pikxplus.MainActivity;
 import com.ccko.pikxplus.R;
 import com.ccko.pikxplus.adapters.MediaItems;
+import com.ccko.pikxplus.adapters.MediaSessionRepository;
 import com.ccko.pikxplus.features.GestureAndSlideShow;
 import com.ccko.pikxplus.utils.FloatingWindowManager;
 import com.google.android.exoplayer2.ExoPlayer;
@@ -251,7 +252,11 @@ public class VideoPlayerFragment extends Fragment {
     // Get arguments
     Bundle args = getArguments();
     if (args != null) {
-      mediaItems = args.getParcelableArrayList("media_items");
+      mediaItems =
+          MediaSessionRepository.getInstance(requireContext())
+              .get(
+                  args.getInt(
+                      MediaSessionRepository.ARG_SESSION_ID, MediaSessionRepository.NO_SESSION));
       currentIndex = args.getInt("current_index", 0);
 
       if (mediaItems != null && currentIndex >= 0 && currentIndex < mediaItems.size()) {
@@ -11,9 +11,9 @@ import android.content.Context;
 import android.content.res.Configuration;
 import android.graphics.Bitmap;
 import android.graphics.Color;
-import android.graphics.ImageDecoder;
 import android.graphics.Matrix;
 import android.graphics.RectF;
+import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Animatable;
 import android.net.Uri;
@@ -21,6 +21,7 @@ import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
 import android.provider.MediaStore;
+import android.util.DisplayMetrics;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -42,12 +43,14 @@ import androidx.fragment.app.Fragment;
 
 import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.request.target.CustomTarget;
+import com.bumptech.glide.request.transition.Transition;
+import com.bumptech.glide.signature.ObjectKey;
 import com.ccko.pikxplus.MainActivity;
 import com.ccko.pikxplus.R;
+import com.ccko.pikxplus.adapters.BitmapReusePool;
 import com.ccko.pikxplus.adapters.ImageLoader;
 import java.io.File;
-import java.io.InputStream;
-import java.util.ArrayList;
 import java.util.List;
 
 import android.os.Build;
@@ -63,7 +66,12 @@ import com.ccko.pikxplus.features.GestureAndSlideShow;
 // video player IMPORTS
 import com.google.android.exoplayer2.ExoPlayer;
 import com.google.android.exoplayer2.ui.StyledPlayerView;
+import com.ccko.pikxplus.adapters.MediaIndex;
 import com.ccko.pikxplus.adapters.MediaItems;
+import com.ccko.pikxplus.adapters.MediaSessionRepository;
+import com.ccko.pikxplus.adapters.MediaThumbnailLoader;
+import com.ccko.pikxplus.adapters.TiledImageDrawable;
+import com.ccko.pikxplus.utils.TaskScheduler;
 import android.media.AudioManager;
 
 public class ViewerFragment extends Fragment {
@@ -101,6 +109,8 @@ public class ViewerFragment extends Fragment {
 
   // NEW FIELDS FOR VIDEO SUPPORT
   private List<MediaItems> mediaItems; // Changed from List<Uri> imageUris
+  private int sessionId = MediaSessionRepository.NO_SESSION; // where mediaItems comes from
+  private static final int SESSION_PAGE_AHEAD = 20; // items left before the next page is read
   private boolean isVideoMode = false;
   private ExoPlayer exoPlayer;
   private StyledPlayerView playerView;
@@ -110,6 +120,15 @@ public class ViewerFragment extends Fragment {
   private Handler controlsHandler = new Handler(Looper.getMainLooper());
   private Runnable hideControlsRunnable;
 
+  // Decode of the item on screen; swiping on cancels it so stale images never land
+  private TaskScheduler.Token viewTasks;
+  private TaskScheduler.Task displayTask;
+  private volatile int displayGeneration;
+
+  // Thumbnail shown until the full decode lands
+  private static final int PREVIEW_SIZE = 512;
+  private CustomTarget<Drawable> previewTarget;
+
   // Volume/Brightness state
   private AudioManager audioManager;
   private int maxVolume;
@@ -132,7 +151,7 @@ public class ViewerFragment extends Fragment {
   private static final int ROTATION_DURATION = 500;
 
   public interface OnImageDeletedListener {
-    void onImageDeleted(int deletedIndex);
+    void onImageDeleted(int deletedIndex, Uri deletedUri);
   }
 
   private OnImageDeletedListener deleteListener;
@@ -481,12 +500,15 @@ public class ViewerFragment extends Fragment {
   @Override
   public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
     super.onViewCreated(view, savedInstanceState);
+    viewTasks = TaskScheduler.Token.forLifecycle(getViewLifecycleOwner());
 
     // calling the viewer: read args, allow optional "user_picked" flag
     Bundle args = getArguments();
     if (args != null) {
       // NEW: Receive MediaItem list (contains both images and videos)
-      mediaItems = args.getParcelableArrayList("media_items");
+      sessionId =
+          args.getInt(MediaSessionRepository.ARG_SESSION_ID, MediaSessionRepository.NO_SESSION);
+      mediaItems = MediaSessionRepository.getInstance(requireContext()).get(sessionId);
       int incomingIndex = args.getInt("current_index", 0);
       userPickedImage = args.getBoolean("user_picked", false);
 
@@ -752,30 +774,6 @@ public class ViewerFragment extends Fragment {
     }
   }
 
-  // Helper method to detect animated webp files
-  private boolean isAnimatedWebp(byte[] header) {
-    try {
-      // Check RIFF header
-      if (header.length < 12
-          || header[0] != 'R'
-          || header[1] != 'I'
-          || header[2] != 'F'
-          || header[3] != 'F'
-          || header[8] != 'W'
-          || header[9] != 'E'
-          || header[10] != 'B'
-          || header[11] != 'P') {
-        return false;
-      }
-
-      // For complete detection we would need to parse chunks, but this is a good heuristic
-      // Animated webp files typically have VP8X chunk with animation flag
-      return true; // Simplified for now - most webp files on Android 11 can be animated
-    } catch (Exception e) {
-      return false;
-    }
-  }
-
   // helper for zoom out animation snap back
   private void animateScaleTo(float targetScale) {
     final Matrix startMatrix = new Matrix(imageMatrix); // Snapshot current
@@ -1066,9 +1064,11 @@ public class ViewerFragment extends Fragment {
     boolean deleted = deleteImageFromStorage(getContext(), item.uri);
 
     if (deleted) {
+      MediaIndex.getInstance(requireContext()).remove(item.id);
       mediaItems.remove(currentIndex);
+      MediaSessionRepository.getInstance(requireContext()).update(sessionId);
       if (deleteListener != null) {
-        deleteListener.onImageDeleted(currentIndex);
+        deleteListener.onImageDeleted(currentIndex, item.uri);
       }
 
       if (mediaItems.isEmpty()) {
@@ -1220,6 +1220,11 @@ public class ViewerFragment extends Fragment {
     MediaItems item = mediaItems.get(index);
     currentIndex = index;
 
+    // A session opened from a paged grid reads its next page before the viewer gets there
+    if (index >= mediaItems.size() - SESSION_PAGE_AHEAD) {
+      MediaSessionRepository.getInstance(requireContext()).loadMore(sessionId);
+    }
+
     // Save to SharedPreferences
     saveViewerState(item.uri, currentIndex);
 
@@ -1247,6 +1252,35 @@ public class ViewerFragment extends Fragment {
   }
 
   // NEW METHOD: Load a single image
+  // Clear previous drawable safely, handing its memory back (tiles, pooled bitmap)
+  private void clearDisplayedDrawable() {
+    Drawable previous = imageView.getDrawable();
+    if (previous != null) {
+      previous.setCallback(null);
+      imageView.setImageDrawable(null);
+      releaseDrawable(previous);
+    }
+  }
+
+  // A still decoded into a pooled bitmap when one fits; null for images stored rotated or
+  // mirrored, those go through ImageDecoder which applies the EXIF orientation
+  @Nullable
+  private static Drawable decodeReusable(Context context, Uri source) {
+    Bitmap bitmap = ImageLoader.loadUprightWithLimit(context, source, ImageLoader.MAX_FULL);
+    return bitmap != null ? new BitmapDrawable(context.getResources(), bitmap) : null;
+  }
+
+  // Give a bitmap ImageLoader decoded back to the pool once nothing draws it; the
+  // pool ignores bitmaps it didn't hand out (Glide's, ImageDecoder's). Tiled
+  // drawables stop decoding and drop their tiles.
+  private static void releaseDrawable(Drawable drawable) {
+    if (drawable instanceof TiledImageDrawable) {
+      ((TiledImageDrawable) drawable).recycle();
+    } else if (drawable instanceof BitmapDrawable) {
+      BitmapReusePool.get().put(((BitmapDrawable) drawable).getBitmap());
+    }
+  }
+
   private void loadImage(MediaItems item) {
     Log.d("ImageDebug", "Loading image: " + item.name);
     // Ensure we're in image mode
@@ -1264,11 +1298,7 @@ public class ViewerFragment extends Fragment {
     // Reset zoom
     scaleFactor = 1.0f;
 
-    // Clear previous drawable safely
-    if (imageView.getDrawable() != null) {
-      imageView.getDrawable().setCallback(null);
-      imageView.setImageDrawable(null);
-    }
+    clearDisplayedDrawable();
 
     imageView.setScaleType(ImageView.ScaleType.MATRIX);
     imageMatrix = new Matrix();
@@ -1276,174 +1306,254 @@ public class ViewerFragment extends Fragment {
     // Save viewer state for this image
     saveViewerState(item.uri, currentIndex);
 
-    // Background load: use Glide to fetch cached file
-    new Thread(
-            () -> {
-              WeakReference<ImageView> imageViewRef = new WeakReference<>(imageView);
-              WeakReference<TextView> nameTextViewRef = new WeakReference<>(imageNameText);
-              WeakReference<FragmentActivity> activityRef =
-                  new WeakReference<>((FragmentActivity) getActivity());
-
-              com.bumptech.glide.request.FutureTarget<File> future = null;
-              try {
-                Context context = getContext();
-                if (context == null) return;
-
-                // 1) Ask Glide for a local File (this will use cache if available):
-                future =
-                    Glide.with(context)
-                        .asFile()
-                        .load(item.uri)
-                        // my favorite option -->	.override(?)
-                        .diskCacheStrategy(DiskCacheStrategy.AUTOMATIC)
-                        .submit();
-
-                // Wait for file (timeout optional)
-                File file = null;
-                try {
-                  file = future.get(5, TimeUnit.SECONDS);
-                } catch (Exception ex) {
-                  // fallback: null file -> we'll try direct stream from content
-                  // resolver
-                  file = null;
-                }
-
-                // 2) Decide how to load the image: prefer file when available
-                Context ctx = context;
-                Drawable drawable = null;
+    // Tiles are picked for this size; before the first layout the screen is close enough
+    DisplayMetrics metrics = getResources().getDisplayMetrics();
+    int viewWidth = imageView.getWidth() > 0 ? imageView.getWidth() : metrics.widthPixels;
+    int viewHeight = imageView.getHeight() > 0 ? imageView.getHeight() : metrics.heightPixels;
 
-                if (file != null && file.exists()) {
-                  // If file is present, use ImageDecoder (API >= 28) or Bitmap
-                  // decode
-                  if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+    // Background load: use Glide to fetch cached file
+    int generation = startDisplayTask();
+    showPreview(item, generation);
+    displayTask =
+        TaskScheduler.get()
+            .submit(
+                TaskScheduler.Lane.VISIBLE_DECODE,
+                viewTasks,
+                () -> {
+                  WeakReference<ImageView> imageViewRef = new WeakReference<>(imageView);
+                  WeakReference<TextView> nameTextViewRef = new WeakReference<>(imageNameText);
+                  WeakReference<FragmentActivity> activityRef =
+                      new WeakReference<>((FragmentActivity) getActivity());
+
+                  com.bumptech.glide.request.FutureTarget<File> future = null;
+                  try {
+                    Context context = getContext();
+                    if (context == null) return;
+
+                    // 1) Ask Glide for a local File (this will use cache if available):
+                    future =
+                        Glide.with(context)
+                            .asFile()
+                            .load(item.uri)
+                            // my favorite option -->	.override(?)
+                            .diskCacheStrategy(DiskCacheStrategy.AUTOMATIC)
+                            .submit();
+
+                    // Wait for file (timeout optional)
+                    File file = null;
                     try {
-                      ImageDecoder.Source src = ImageDecoder.createSource(file);
-                      drawable =
-                          ImageDecoder.decodeDrawable(
-                              src,
-                              (decoder, info, source) -> {
-                                // Get original size
-                                int width = info.getSize().getWidth();
-                                int height = info.getSize().getHeight();
-
-                                // Apply 4K limit
-                                // TODO: add a tile loading object instead of hard code limit.
-                                if (width > 4096 || height > 4096) {
-                                  float scale = Math.min(4096f / width, 4096f / height);
-                                  int targetWidth = (int) (width * scale);
-                                  int targetHeight = (int) (height * scale);
-
-                                  decoder.setTargetSize(targetWidth, targetHeight);
-                                }
-                              });
-                    } catch (Throwable t) {
-                      drawable = null;
+                      file = future.get(5, TimeUnit.SECONDS);
+                    } catch (Exception ex) {
+                      // fallback: null file -> we'll try direct stream from content
+                      // resolver
+                      file = null;
                     }
-                  }
-                  if (drawable == null) {
-                    // Use ImageLoader to decode bitmap from file
-                    Bitmap bm =
-                        ImageLoader.loadWithLimit(ctx, Uri.fromFile(file), ImageLoader.MAX_FULL);
-                  }
-
-                } else {
-                  // No file from Glide: detect via MIME and use stream
-                  String mimeType = ctx.getContentResolver().getType(item.uri);
-                  boolean isGif = mimeType != null && mimeType.equals("image/gif");
-                  boolean isWebp = mimeType != null && mimeType.contains("webp");
-                  boolean isAnimatedWebp = false;
-
-                  if (isWebp) {
-                    try (InputStream is = ctx.getContentResolver().openInputStream(item.uri)) {
-                      byte[] header = new byte[12];
-                      if (is != null && is.read(header) == 12) {
-                        isAnimatedWebp = isAnimatedWebp(header);
+                    if (generation != displayGeneration) return; // swiped past meanwhile
+
+                    // 2) Decide how to load the image: prefer file when available
+                    Context ctx = context;
+                    Drawable drawable = null;
+
+                    // Prefer Glide's file; otherwise decode straight from the content Uri. Every
+                    // decoder reads header and pixels from one open.
+                    Uri source = file != null && file.exists() ? Uri.fromFile(file) : item.uri;
+                    if (item.isStaticImage()) {
+                      // Big stills: a screen-sized base layer now, detail tiles when zoomed.
+                      // Decided from the size the list already has, so the rest isn't opened twice
+                      if (TiledImageDrawable.worthTiling(
+                          item.width, item.height, viewWidth, viewHeight)) {
+                        try {
+                          drawable = TiledImageDrawable.open(ctx, source, viewWidth, viewHeight);
+                        } catch (Throwable t) {
+                          drawable = null;
+                        }
+                      }
+                      if (drawable == null) {
+                        // Into a bitmap an earlier image gave back (BitmapReusePool), so swiping
+                        // and the slideshow don't allocate a new multi-MB bitmap per step
+                        drawable = decodeReusable(ctx, source);
                       }
-                    } catch (Exception ignored) {
                     }
-                  }
-
-                  if (isGif || isAnimatedWebp) {
-                    // Use framework decoder from InputStream
-                    try (InputStream is = ctx.getContentResolver().openInputStream(item.uri)) {
-                      if (is != null) {
-                        drawable = Drawable.createFromStream(is, null);
+                    if (drawable == null) {
+                      // GIFs / animated WebPs come back animated, and it reads what
+                      // BitmapFactory can't
+                      try {
+                        drawable = ImageLoader.decodeDrawable(ctx, source, ImageLoader.MAX_FULL);
+                      } catch (Throwable t) {
+                        drawable = null;
                       }
-                    } catch (Exception e) {
-                      Log.e(TAG, "stream animated load failed", e);
                     }
-                  } else {
-                    // static image fallback via ImageLoader
-                    Bitmap bm =
-                        ImageLoader.loadWithLimit(ctx, Uri.fromFile(file), ImageLoader.MAX_FULL);
-                    if (bm != null) {
-                      drawable =
-                          new android.graphics.drawable.BitmapDrawable(ctx.getResources(), bm);
+                    if (drawable == null && !item.isStaticImage()) {
+                      drawable = decodeReusable(ctx, source); // at least the first frame
                     }
-                  }
-                }
 
-                final Drawable finalDrawable = drawable;
-                final FragmentActivity activity = activityRef.get();
+                    final Drawable finalDrawable = drawable;
+                    final FragmentActivity activity = activityRef.get();
 
-                if (activity != null && !activity.isFinishing() && !activity.isDestroyed()) {
-                  activity.runOnUiThread(
-                      () -> {
-                        ImageView imgView = imageViewRef.get();
-                        TextView nameView = nameTextViewRef.get();
+                    if (activity != null && !activity.isFinishing() && !activity.isDestroyed()) {
+                      activity.runOnUiThread(
+                          () -> {
+                            ImageView imgView = imageViewRef.get();
+                            TextView nameView = nameTextViewRef.get();
+
+                            if (imgView == null
+                                || nameView == null
+                                || generation != displayGeneration) {
+                              releaseDrawable(finalDrawable); // never shown
+                              return;
+                            }
+
+                            Drawable preview = imgView.getDrawable();
+                            if (finalDrawable != null) {
+                              imgView.setImageDrawable(finalDrawable);
 
-                        if (imgView == null || nameView == null) return;
+                              // If drawable animatable, start it
+                              if (finalDrawable instanceof Animatable) {
+                                try {
+                                  ((Animatable) finalDrawable).start();
+                                } catch (Throwable ignored) {
+                                }
+                              }
+                            } else {
+                              imgView.setImageResource(R.drawable.ic_broken_image);
+                            }
+                            clearPreview();
+
+                            if (finalDrawable != null && sameShape(preview, finalDrawable)) {
+                              // Same place on screen as the preview, even if zoomed meanwhile
+                              float ratio =
+                                  (float) preview.getIntrinsicWidth()
+                                      / finalDrawable.getIntrinsicWidth();
+                              imageMatrix.preScale(ratio, ratio);
+                            } else {
+                              // Apply computed initial fit matrix
+                              imageMatrix = computeInitialMatrix(imgView);
+                            }
+                            imgView.setImageMatrix(imageMatrix);
+                            imgView.setScaleType(ImageView.ScaleType.MATRIX);
 
-                        if (finalDrawable != null) {
-                          imgView.setImageDrawable(finalDrawable);
+                            // Update UI
+                            updateIndexDisplay();
+                            nameView.setText(item.name);
 
-                          // If drawable animatable, start it
-                          if (finalDrawable instanceof Animatable) {
-                            try {
-                              ((Animatable) finalDrawable).start();
-                            } catch (Throwable ignored) {
+                            // Preload nearby images
+                            preloadNearbyImages();
+                          });
+                    }
+                  } catch (Exception e) {
+                    Log.e(TAG, "Error loading image", e);
+                    FragmentActivity activity = activityRef.get();
+                    if (activity != null && !activity.isFinishing() && !activity.isDestroyed()) {
+                      activity.runOnUiThread(
+                          () -> {
+                            ImageView imgView = imageViewRef.get();
+                            if (imgView != null && generation == displayGeneration) {
+                              imgView.setImageResource(R.drawable.ic_broken_image);
                             }
-                          }
-                        } else {
-                          imgView.setImageResource(R.drawable.ic_broken_image);
-                        }
+                          });
+                    }
+                  } finally {
+                    // Make sure to clear Glide future
+                    if (future != null) {
+                      try {
+                        Glide.with(this).clear(future);
+                      } catch (Exception ignored) {
+                      }
+                    }
+                  }
+                });
+  }
 
-                        // Apply computed initial fit matrix
-                        imageMatrix = computeInitialMatrix(imgView);
-                        imgView.setImageMatrix(imageMatrix);
-                        imgView.setScaleType(ImageView.ScaleType.MATRIX);
+  // Cancels whatever is still decoding for the previous item; returns the new item's generation
+  private int startDisplayTask() {
+    if (displayTask != null) {
+      displayTask.cancel();
+      displayTask = null;
+    }
+    clearPreview();
+    return ++displayGeneration;
+  }
 
-                        // Update UI
-                        updateIndexDisplay();
-                        nameView.setText(item.name);
+  // Show the item's MediaStore thumbnail, fitted like the full image, until the full decode
+  // arrives. The grid loaded the same platform thumbnail (it only shows it cropped), so this is
+  // a small cached read, or a memory hit when the item was opened before.
+  private void showPreview(MediaItems item, int generation) {
+    previewTarget =
+        Glide.with(this)
+            .load(item.uri)
+            .set(MediaThumbnailLoader.PLATFORM_THUMBNAIL, true)
+            .signature(new ObjectKey(item.dateModified)) // an edited file gets a new preview
+            .override(PREVIEW_SIZE)
+            .dontTransform()
+            .into(
+                new CustomTarget<Drawable>() {
+                  private Drawable shown;
+
+                  @Override
+                  public void onResourceReady(
+                      @NonNull Drawable resource, @Nullable Transition<? super Drawable> t) {
+                    if (imageView == null
+                        || generation != displayGeneration
+                        || imageView.getDrawable() != null) {
+                      return; // swiped past, or the full image was quicker
+                    }
+                    shown = resource;
+                    imageView.setImageDrawable(resource);
+                    fitWhenLaidOut(resource);
+                  }
 
-                        // Preload nearby images
-                        preloadNearbyImages();
-                      });
-                }
-              } catch (Exception e) {
-                Log.e(TAG, "Error loading image", e);
-                FragmentActivity activity = activityRef.get();
-                if (activity != null && !activity.isFinishing() && !activity.isDestroyed()) {
-                  activity.runOnUiThread(
-                      () -> {
-                        ImageView imgView = imageViewRef.get();
-                        if (imgView != null) {
-                          imgView.setImageResource(R.drawable.ic_broken_image);
-                        }
-                      });
-                }
-              } finally {
-                // Make sure to clear Glide future
-                if (future != null) {
-                  try {
-                    Glide.with(this).clear(future);
-                  } catch (Exception ignored) {
+                  @Override
+                  public void onLoadCleared(@Nullable Drawable placeholder) {
+                    // Glide takes the bitmap back, stop drawing it
+                    if (imageView != null && shown != null && imageView.getDrawable() == shown) {
+                      imageView.setImageDrawable(null);
+                    }
+                    shown = null;
                   }
-                }
-              }
-            })
-        .start();
+                });
+  }
+
+  // computeInitialMatrix needs the view's size, and on the first open a cached preview lands
+  // before the first layout
+  private void fitWhenLaidOut(Drawable drawable) {
+    if (imageView.isLaidOut()) {
+      imageMatrix = computeInitialMatrix(imageView);
+      imageView.setImageMatrix(imageMatrix);
+      return;
+    }
+    imageView.addOnLayoutChangeListener(
+        new View.OnLayoutChangeListener() {
+          @Override
+          public void onLayoutChange(
+              View v, int l, int t, int r, int b, int oldL, int oldT, int oldR, int oldB) {
+            v.removeOnLayoutChangeListener(this);
+            if (v == imageView && imageView.getDrawable() == drawable) {
+              imageMatrix = computeInitialMatrix(imageView);
+              imageView.setImageMatrix(imageMatrix);
+            }
+          }
+        });
+  }
+
+  // Whether the preview is a scaled copy of the full image (thumbnail sizes are rounded)
+  private static boolean sameShape(Drawable preview, Drawable full) {
+    if (preview == null
+        || preview.getIntrinsicWidth() <= 0
+        || preview.getIntrinsicHeight() <= 0
+        || full.getIntrinsicWidth() <= 0
+        || full.getIntrinsicHeight() <= 0) {
+      return false;
+    }
+    float previewAspect = (float) preview.getIntrinsicWidth() / preview.getIntrinsicHeight();
+    float fullAspect = (float) full.getIntrinsicWidth() / full.getIntrinsicHeight();
+    return Math.abs(previewAspect / fullAspect - 1f) < 0.02f;
+  }
+
+  private void clearPreview() {
+    if (previewTarget != null) {
+      Glide.with(this).clear(previewTarget);
+      previewTarget = null;
+    }
   }
 
   // Show video thumbnail with play button
@@ -1453,6 +1563,7 @@ public class ViewerFragment extends Fragment {
 
     // Reset zoom
     scaleFactor = 1.0f;
+    clearDisplayedDrawable();
     imageView.setScaleType(ImageView.ScaleType.MATRIX);
     imageMatrix = new Matrix();
 
@@ -1462,34 +1573,40 @@ public class ViewerFragment extends Fragment {
     }
 
     // Load video thumbnail in background
-    new Thread(
-            () -> {
-              try {
-                Context context = getContext();
-                if (context == null) return;
-
-                Bitmap bitmap = Glide.with(context).asBitmap().load(item.uri).submit().get();
-
-                if (getActivity() != null && !getActivity().isFinishing()) {
-                  getActivity()
-                      .runOnUiThread(
-                          () -> {
-                            if (imageView != null && bitmap != null) {
-                              imageView.setImageBitmap(bitmap);
-                              imageMatrix = computeInitialMatrix(imageView);
-                              imageView.setImageMatrix(imageMatrix);
-                              imageView.setScaleType(ImageView.ScaleType.MATRIX);
-
-                              // Show play button overlay
-                              showPlayButtonOverlay();
-                            }
-                          });
-                }
-              } catch (Exception e) {
-                Log.e(TAG, "Error loading video thumbnail", e);
-              }
-            })
-        .start();
+    int generation = startDisplayTask();
+    displayTask =
+        TaskScheduler.get()
+            .submit(
+                TaskScheduler.Lane.VISIBLE_DECODE,
+                viewTasks,
+                () -> {
+                  try {
+                    Context context = getContext();
+                    if (context == null) return;
+
+                    Bitmap bitmap = Glide.with(context).asBitmap().load(item.uri).submit().get();
+
+                    if (getActivity() != null && !getActivity().isFinishing()) {
+                      getActivity()
+                          .runOnUiThread(
+                              () -> {
+                                if (imageView != null
+                                    && bitmap != null
+                                    && generation == displayGeneration) {
+                                  imageView.setImageBitmap(bitmap);
+                                  imageMatrix = computeInitialMatrix(imageView);
+                                  imageView.setImageMatrix(imageMatrix);
+                                  imageView.setScaleType(ImageView.ScaleType.MATRIX);
+
+                                  // Show play button overlay
+                                  showPlayButtonOverlay();
+                                }
+                              });
+                    }
+                  } catch (Exception e) {
+                    Log.e(TAG, "Error loading video thumbnail", e);
+                  }
+                });
 
     updateIndexDisplay();
     imageNameText.setText(item.name);
@@ -1532,9 +1649,8 @@ public class ViewerFragment extends Fragment {
     VideoPlayerFragment videoPlayerFragment = new VideoPlayerFragment();
     Bundle args = new Bundle();
 
-    // Pass all media items and current index
-    ArrayList<MediaItems> parcelableList = new ArrayList<>(mediaItems);
-    args.putParcelableArrayList("media_items", parcelableList);
+    // Same session as this viewer, and current index
+    args.putInt(MediaSessionRepository.ARG_SESSION_ID, sessionId);
     args.putInt("current_index", videoIndex);
     videoPlayerFragment.setArguments(args);
 
@@ -1606,14 +1722,14 @@ public class ViewerFragment extends Fragment {
     }
 
     // Clear image view
+    clearPreview();
     if (imageView != null) {
-      if (imageView.getDrawable() != null) {
-        imageView.getDrawable().setCallback(null);
-        imageView.setImageDrawable(null);
-      }
+      clearDisplayedDrawable();
       com.bumptech.glide.Glide.with(this).clear(imageView);
       imageView = null;
     }
+    // Only worth keeping while swiping through the viewer
+    BitmapReusePool.get().clear();
 
     // CRITICAL: Ensure gesture delegate is cleared
     if (getActivity() instanceof MainActivity) {
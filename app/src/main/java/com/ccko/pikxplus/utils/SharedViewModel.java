@@ -8,6 +8,8 @@ import com.ccko.pikxplus.ui.SearchFragment;
 
 public class SharedViewModel extends ViewModel {
 	private final MutableLiveData<SearchFragment.Filter> filterLive = new MutableLiveData<>();
+	// How long the last filter took to evaluate, the search box debounces by it
+	private volatile long filterCostMs = -1;
 
 	public void setFilter(SearchFragment.Filter filter) {
 		filterLive.setValue(filter);
@@ -16,4 +18,13 @@ public class SharedViewModel extends ViewModel {
 	public LiveData<SearchFragment.Filter> getFilter() {
 		return filterLive;
 	}
-}
\ No newline at end of file
+
+	public void setFilterCost(long millis) {
+		filterCostMs = millis;
+	}
+
+	/** Milliseconds the last filter evaluation took, -1 before the first one. */
+	public long getFilterCost() {
+		return filterCostMs;
+	}
+}
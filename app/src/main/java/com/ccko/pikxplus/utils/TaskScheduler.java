@@ -0,0 +1,225 @@
+package com.ccko.pikxplus.utils;
+
+import android.os.CancellationSignal;
+import android.util.Log;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * One app-wide pool for background work, instead of a new Thread per call.
+ *
+ * <p>Work goes into a lane. Lanes are served in priority order (UI_CRITICAL first), each lane
+ * has its own cap so e.g. indexing can never take every thread, and the whole pool is bounded.
+ * A task that was cancelled (directly or through its Token) before a thread picked it up is
+ * dropped without running; cancelling a running task interrupts it.
+ */
+public final class TaskScheduler {
+
+  private static final String TAG = "TaskScheduler";
+
+  public enum Lane {
+    UI_CRITICAL(2), // what the user is waiting for: album lists, first pages
+    VISIBLE_DECODE(2), // image / thumbnail on screen right now
+    PREFETCH(1), // neighbours, sort orders, anything "might need soon"
+    BACKGROUND(1); // index sync, classification
+
+    final int maxRunning;
+
+    Lane(int maxRunning) {
+      this.maxRunning = maxRunning;
+    }
+  }
+
+  private static final TaskScheduler INSTANCE =
+      new TaskScheduler(Math.max(3, Math.min(4, Runtime.getRuntime().availableProcessors())));
+
+  public static TaskScheduler get() {
+    return INSTANCE;
+  }
+
+  private final Object lock = new Object();
+  private final ArrayDeque<Task>[] queues;
+  private final int[] running;
+
+  @SuppressWarnings("unchecked")
+  private TaskScheduler(int threads) {
+    Lane[] lanes = Lane.values();
+    queues = new ArrayDeque[lanes.length];
+    for (int i = 0; i < lanes.length; i++) {
+      queues[i] = new ArrayDeque<>();
+    }
+    running = new int[lanes.length];
+
+    for (int i = 0; i < threads; i++) {
+      Thread worker = new Thread(this::workLoop, TAG + "-" + i);
+      worker.setDaemon(true);
+      worker.start();
+    }
+  }
+
+  /** Queue work in a lane. The token (may be null) cancels it together with its siblings. */
+  public Task submit(Lane lane, @Nullable Token token, Runnable work) {
+    Task task = new Task(lane, token, work);
+    if (token != null && !token.add(task)) {
+      return task; // token already cancelled, never queued
+    }
+    synchronized (lock) {
+      queues[lane.ordinal()].addLast(task);
+      lock.notify();
+    }
+    return task;
+  }
+
+  private void workLoop() {
+    while (true) {
+      Task task;
+      synchronized (lock) {
+        while ((task = pollNext()) == null) {
+          try {
+            lock.wait();
+          } catch (InterruptedException ignored) {
+            // only a cancelled task's interrupt can land here, keep serving
+          }
+        }
+        running[task.lane.ordinal()]++;
+      }
+
+      try {
+        task.run();
+      } finally {
+        synchronized (lock) {
+          running[task.lane.ordinal()]--;
+          lock.notifyAll(); // a lane may have capacity again
+        }
+        Thread.interrupted(); // don't leak a cancel into the next task
+      }
+    }
+  }
+
+  // Highest-priority lane with queued work and a free slot; cancelled tasks are dropped here
+  private Task pollNext() {
+    for (Lane lane : Lane.values()) {
+      ArrayDeque<Task> queue = queues[lane.ordinal()];
+      if (running[lane.ordinal()] >= lane.maxRunning) continue;
+      Task task;
+      while ((task = queue.pollFirst()) != null) {
+        if (!task.isCancelled()) return task;
+        if (task.token != null) task.token.remove(task);
+      }
+    }
+    return null;
+  }
+
+  /** Handle of submitted work. */
+  public static final class Task {
+    private final Lane lane;
+    @Nullable private final Token token;
+    private final Runnable work;
+    private volatile boolean cancelled;
+    private Thread thread; // guarded by this
+
+    Task(Lane lane, @Nullable Token token, Runnable work) {
+      this.lane = lane;
+      this.token = token;
+      this.work = work;
+    }
+
+    public boolean isCancelled() {
+      return cancelled || (token != null && token.isCancelled());
+    }
+
+    /** Drop it if it hasn't started, interrupt it if it's running. */
+    public void cancel() {
+      cancelled = true;
+      synchronized (this) {
+        if (thread != null) thread.interrupt();
+      }
+    }
+
+    void run() {
+      synchronized (this) {
+        if (isCancelled()) return;
+        thread = Thread.currentThread();
+      }
+      try {
+        work.run();
+      } catch (Throwable t) {
+        Log.e(TAG, "Task failed in " + lane, t);
+      } finally {
+        synchronized (this) {
+          thread = null;
+        }
+        if (token != null) token.remove(this);
+      }
+    }
+  }
+
+  /**
+   * Cancels a group of tasks at once, e.g. everything a fragment view started. Also usable as
+   * a CancellationSignal for provider queries.
+   */
+  public static final class Token {
+    private final CancellationSignal signal = new CancellationSignal();
+    private final Set<Task> tasks = new HashSet<>();
+    private boolean cancelled;
+
+    /** A token cancelled when the owner (e.g. getViewLifecycleOwner()) is destroyed. */
+    public static Token forLifecycle(LifecycleOwner owner) {
+      Token token = new Token();
+      if (owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) {
+        token.cancel();
+        return token;
+      }
+      owner
+          .getLifecycle()
+          .addObserver(
+              new LifecycleEventObserver() {
+                @Override
+                public void onStateChanged(LifecycleOwner source, Lifecycle.Event event) {
+                  if (event == Lifecycle.Event.ON_DESTROY) {
+                    source.getLifecycle().removeObserver(this);
+                    token.cancel();
+                  }
+                }
+              });
+      return token;
+    }
+
+    public synchronized boolean isCancelled() {
+      return cancelled;
+    }
+
+    public CancellationSignal getSignal() {
+      return signal;
+    }
+
+    public void cancel() {
+      Task[] toCancel;
+      synchronized (this) {
+        if (cancelled) return;
+        cancelled = true;
+        toCancel = tasks.toArray(new Task[0]);
+        tasks.clear();
+      }
+      signal.cancel();
+      for (Task task : toCancel) {
+        task.cancel();
+      }
+    }
+
+    synchronized boolean add(Task task) {
+      if (cancelled) return false;
+      tasks.add(task);
+      return true;
+    }
+
+    synchronized void remove(Task task) {
+      tasks.remove(task);
+    }
+  }
+}